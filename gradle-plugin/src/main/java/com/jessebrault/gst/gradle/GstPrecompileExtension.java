@@ -0,0 +1,27 @@
+package com.jessebrault.gst.gradle;
+
+import org.gradle.api.provider.ListProperty;
+import org.gradle.api.provider.Property;
+
+public abstract class GstPrecompileExtension {
+
+    /**
+     * Defaults to com.jessebrault.gst.parser.StandardGstParser.
+     */
+    public abstract Property<String> getParserClassName();
+
+    /**
+     * Prefixed to the names of the generated classes, which must be unique per class path. Defaults
+     * to the project name.
+     */
+    public abstract Property<String> getClassNamePrefix();
+
+    public abstract ListProperty<String> getCustomImportStatements();
+
+    /**
+     * Whether the templates are compiled with @CompileStatic, in which case they must declare their
+     * bindings, which needs the ExtendedGstParser. Defaults to false.
+     */
+    public abstract Property<Boolean> getCompileStatic();
+
+}
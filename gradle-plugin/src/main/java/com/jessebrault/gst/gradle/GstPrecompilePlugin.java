@@ -0,0 +1,98 @@
+package com.jessebrault.gst.gradle;
+
+import org.gradle.api.Plugin;
+import org.gradle.api.Project;
+import org.gradle.api.file.Directory;
+import org.gradle.api.file.FileSystemOperations;
+import org.gradle.api.plugins.JavaPlugin;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.tasks.JavaExec;
+import org.gradle.api.tasks.PathSensitivity;
+import org.gradle.api.tasks.SourceSetContainer;
+import org.gradle.api.tasks.TaskProvider;
+
+import javax.inject.Inject;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * For each source set, precompiles the templates in src/[sourceSet]/gst with the
+ * GroovyTemplatePrecompiler and adds the classes and index to the source set's output, where
+ * PrecompiledTemplates finds them at runtime. Templates are named by their paths relative to
+ * src/[sourceSet]/gst, e.g. pages/index.gst. Any diagnostic fails the build.
+ *
+ * The precompiler runs on the source set's runtime and compile classpaths, so the project must depend
+ * on gst itself, and templates may import the project's own classes and its compileOnly dependencies.
+ */
+public abstract class GstPrecompilePlugin implements Plugin<Project> {
+
+    private static final String precompilerClassName = "com.jessebrault.gst.groovy.GroovyTemplatePrecompiler";
+
+    @Inject
+    protected abstract FileSystemOperations getFileSystemOperations();
+
+    @Override
+    public void apply(Project project) {
+        project.getPluginManager().apply(JavaPlugin.class);
+
+        final var extension = project.getExtensions().create("gstPrecompile", GstPrecompileExtension.class);
+        extension.getParserClassName().convention("com.jessebrault.gst.parser.StandardGstParser");
+        extension.getClassNamePrefix().convention(project.getName());
+        extension.getCustomImportStatements().convention(List.of());
+        extension.getCompileStatic().convention(false);
+
+        final FileSystemOperations fileSystemOperations = this.getFileSystemOperations();
+        final var sourceSets = project.getExtensions().getByType(SourceSetContainer.class);
+        final Provider<String> parserClassName = extension.getParserClassName();
+        final Provider<List<String>> customImportStatements = extension.getCustomImportStatements();
+        final Provider<Boolean> compileStatic = extension.getCompileStatic();
+        sourceSets.configureEach(sourceSet -> {
+            final Directory templatesDirectory = project.getLayout().getProjectDirectory()
+                    .dir("src/" + sourceSet.getName() + "/gst");
+            final Provider<Directory> outputDirectory = project.getLayout().getBuildDirectory()
+                    .dir("gst/" + sourceSet.getName());
+            // main and test classes share a class path
+            final Provider<String> classNamePrefix = extension.getClassNamePrefix()
+                    .map(prefix -> prefix + "_" + sourceSet.getName());
+
+            final TaskProvider<JavaExec> precompile = project.getTasks().register(
+                    sourceSet.getTaskName("precompile", "GstTemplates"),
+                    JavaExec.class,
+                    task -> {
+                        task.setGroup("build");
+                        task.setDescription("Precompiles the gst templates of the " + sourceSet.getName() + " source set.");
+                        task.getMainClass().set(precompilerClassName);
+                        task.setClasspath(sourceSet.getOutput().getClassesDirs()
+                                .plus(project.getConfigurations().getByName(sourceSet.getRuntimeClasspathConfigurationName()))
+                                .plus(sourceSet.getCompileClasspath()));
+                        task.getInputs().files(templatesDirectory)
+                                .withPropertyName("templates")
+                                .withPathSensitivity(PathSensitivity.RELATIVE);
+                        task.getInputs().property("parserClassName", parserClassName);
+                        task.getInputs().property("classNamePrefix", classNamePrefix);
+                        task.getInputs().property("customImportStatements", customImportStatements);
+                        task.getInputs().property("compileStatic", compileStatic);
+                        task.getOutputs().dir(outputDirectory).withPropertyName("outputDirectory");
+                        task.getArgumentProviders().add(() -> {
+                            final List<String> args = new ArrayList<>();
+                            if (compileStatic.get()) {
+                                args.add("--compileStatic");
+                            }
+                            args.add(templatesDirectory.getAsFile().getAbsolutePath());
+                            args.add(outputDirectory.get().getAsFile().getAbsolutePath());
+                            args.add(classNamePrefix.get());
+                            args.add(parserClassName.get());
+                            args.addAll(customImportStatements.get());
+                            return args;
+                        });
+                        task.onlyIf(ignored -> templatesDirectory.getAsFile().isDirectory());
+                        // so that the classes of deleted templates do not linger
+                        task.doFirst(ignored -> fileSystemOperations.delete(spec -> spec.delete(outputDirectory)));
+                    }
+            );
+            sourceSet.getOutput().dir(Map.of("builtBy", precompile), outputDirectory);
+        });
+    }
+
+}
@@ -0,0 +1,91 @@
+package com.jessebrault.gst.gradle;
+
+import org.gradle.testkit.runner.BuildResult;
+import org.gradle.testkit.runner.GradleRunner;
+import org.gradle.testkit.runner.TaskOutcome;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Builds small projects applying the plugin with Gradle TestKit. The gst.classpath system property,
+ * set by the build, has gst and its dependencies, which the projects depend on as files.
+ */
+public class GstPrecompilePluginTests {
+
+    @TempDir
+    Path projectDirectory;
+
+    private void write(String path, String text) throws IOException {
+        final Path file = this.projectDirectory.resolve(path);
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, text);
+    }
+
+    private static String getGstFiles() {
+        return Arrays.stream(System.getProperty("gst.classpath").split(File.pathSeparator))
+                .map(path -> "'" + path.replace('\\', '/') + "'")
+                .collect(Collectors.joining(", "));
+    }
+
+    private void writeProject(String gstPrecompile, String template) throws IOException {
+        this.write("settings.gradle", "rootProject.name = 'app'\ninclude 'api'\n");
+        this.write("api/build.gradle", "plugins {\n    id 'java'\n}\n");
+        this.write(
+                "api/src/main/java/api/Greeting.java",
+                "package api;\n\npublic final class Greeting {\n    public static final String TEXT = \"Hello\";\n}\n"
+        );
+        this.write("build.gradle", """
+                plugins {
+                    id 'java'
+                    id 'com.jessebrault.gst.precompile'
+                }
+
+                dependencies {
+                    implementation files(%s)
+                    compileOnly project(':api')
+                }
+
+                gstPrecompile {
+                %s
+                }
+                """.formatted(getGstFiles(), gstPrecompile));
+        this.write("src/main/gst/greeting.gst", template);
+    }
+
+    private GradleRunner getRunner() {
+        return GradleRunner.create()
+                .withProjectDir(this.projectDirectory.toFile())
+                .withPluginClasspath()
+                .withArguments("precompileGstTemplates", "--stacktrace");
+    }
+
+    @Test
+    public void templatesMayImportCompileOnlyClasses() throws IOException {
+        this.writeProject("", "<%@ import api.Greeting %>${ Greeting.TEXT }, $name!");
+        final BuildResult result = this.getRunner().build();
+        assertEquals(TaskOutcome.SUCCESS, result.task(":precompileGstTemplates").getOutcome());
+        assertTrue(Files.exists(this.projectDirectory.resolve("build/gst/main/META-INF/gst/templates.properties")));
+    }
+
+    @Test
+    public void compileStaticRejectsUndeclaredBindings() throws IOException {
+        this.writeProject(
+                "    parserClassName = 'com.jessebrault.gst.parser.ExtendedGstParser'\n    compileStatic = true",
+                "Hello, $name!"
+        );
+        final BuildResult result = this.getRunner().buildAndFail();
+        assertEquals(TaskOutcome.FAILED, result.task(":precompileGstTemplates").getOutcome());
+        assertTrue(result.getOutput().contains("greeting.gst"));
+    }
+
+}
@@ -0,0 +1,197 @@
+package com.jessebrault.gst;
+
+import com.jessebrault.gst.util.Result;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Wraps another TemplateCreator and keeps the most recently used Templates, keyed by a SHA-256
+ * hash of the input and the custom import statements. Only Results without diagnostics are kept.
+ * Concurrent requests for the same key are compiled only once.
+ *
+ * Once more than maximumSize Templates are kept, the least recently used one is evicted, and closed
+ * if it is AutoCloseable. Provided the delegate gives each Template its own class loader, as the
+ * GroovyTemplateCreator does, the Template's classes can then be unloaded as soon as nothing else
+ * references the Template.
+ */
+public final class CachingTemplateCreator implements TemplateCreator {
+
+    private static final Logger logger = LoggerFactory.getLogger(CachingTemplateCreator.class);
+
+    private static final class Key {
+
+        private final byte[] hash;
+        private final int hashCode;
+
+        private Key(byte[] hash) {
+            this.hash = hash;
+            this.hashCode = Arrays.hashCode(hash);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            } else if (!(obj instanceof Key key)) {
+                return false;
+            } else {
+                return Arrays.equals(this.hash, key.hash);
+            }
+        }
+
+    }
+
+    private static Key getKey(CharSequence input, Collection<String> customImportStatements) {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+        for (final String importStatement : customImportStatements) {
+            digest.update(importStatement.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) '\n');
+        }
+        // separates the imports from the input
+        digest.update((byte) 0);
+        digest.update(input.toString().getBytes(StandardCharsets.UTF_8));
+        return new Key(digest.digest());
+    }
+
+    private static void close(Result<Template> result) {
+        if (result.get() instanceof AutoCloseable closeable) {
+            try {
+                closeable.close();
+            } catch (Exception e) {
+                logger.warn("Exception while closing evicted template", e);
+            }
+        }
+    }
+
+    private static Result<Template> join(CompletableFuture<Result<Template>> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            } else if (e.getCause() instanceof Error error) {
+                throw error;
+            } else {
+                throw e;
+            }
+        }
+    }
+
+    private final TemplateCreator delegate;
+    private final int maximumSize;
+    private final Map<Key, Result<Template>> cache;
+    private final ConcurrentMap<Key, CompletableFuture<Result<Template>>> inFlight = new ConcurrentHashMap<>();
+
+    public CachingTemplateCreator(TemplateCreator delegate, int maximumSize) {
+        if (maximumSize < 1) {
+            throw new IllegalArgumentException("maximumSize must be at least 1");
+        }
+        this.delegate = delegate;
+        this.maximumSize = maximumSize;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Result<Template>> eldest) {
+                if (this.size() > CachingTemplateCreator.this.maximumSize) {
+                    close(eldest.getValue());
+                    return true;
+                } else {
+                    return false;
+                }
+            }
+
+        };
+    }
+
+    private @Nullable Result<Template> getCached(Key key) {
+        synchronized (this.cache) {
+            return this.cache.get(key);
+        }
+    }
+
+    /**
+     * Concurrent calls with the same key share one call to the delegate: the first caller creates
+     * the Template, and the others wait for and return its Result, or rethrow its exception.
+     */
+    @Override
+    public Result<Template> create(CharSequence input, Collection<String> customImportStatements) {
+        final Key key = getKey(input, customImportStatements);
+        final var cached = this.getCached(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        final var future = new CompletableFuture<Result<Template>>();
+        final var inFlight = this.inFlight.putIfAbsent(key, future);
+        if (inFlight != null) {
+            return join(inFlight);
+        }
+        try {
+            // another caller may have finished after our first check
+            final var cachedNow = this.getCached(key);
+            if (cachedNow != null) {
+                future.complete(cachedNow);
+                return cachedNow;
+            }
+            final var result = this.delegate.create(input, customImportStatements);
+            if (!result.hasDiagnostics()) {
+                synchronized (this.cache) {
+                    final var previous = this.cache.put(key, result);
+                    if (previous != null) {
+                        close(previous);
+                    }
+                }
+            }
+            future.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            // only after the result is cached, so that later callers find it there
+            this.inFlight.remove(key, future);
+        }
+    }
+
+    public int size() {
+        synchronized (this.cache) {
+            return this.cache.size();
+        }
+    }
+
+    public void clear() {
+        synchronized (this.cache) {
+            this.cache.values().forEach(CachingTemplateCreator::close);
+            this.cache.clear();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "CachingTemplateCreator(delegate: " + this.delegate + ", maximumSize: " + this.maximumSize + ")";
+    }
+
+}
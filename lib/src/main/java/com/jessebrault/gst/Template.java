@@ -1,5 +1,10 @@
 package com.jessebrault.gst;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
 import java.util.Map;
 
 public interface Template {
@@ -10,4 +15,38 @@ public interface Template {
         return this.make(Map.of());
     }
 
+    /**
+     * Renders into out as the template goes, instead of into a String first. By default, appends the
+     * result of make(binding).
+     */
+    default void make(Map<String, ?> binding, Appendable out) throws IOException {
+        out.append(this.make(binding));
+    }
+
+    /**
+     * Renders as UTF-8 into out, which is not flushed. By default, encodes the result of make(binding).
+     */
+    default void makeUtf8(Map<String, ?> binding, OutputStream out) throws IOException {
+        out.write(this.make(binding).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Renders as UTF-8 into out, which must be a blocking channel. By default, encodes the result of
+     * make(binding).
+     */
+    default void makeUtf8(Map<String, ?> binding, WritableByteChannel out) throws IOException {
+        final ByteBuffer bytes = ByteBuffer.wrap(this.make(binding).getBytes(StandardCharsets.UTF_8));
+        while (bytes.hasRemaining()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Renders as UTF-8 into out, throwing a BufferOverflowException if it does not fit. By default,
+     * encodes the result of make(binding).
+     */
+    default void makeUtf8(Map<String, ?> binding, ByteBuffer out) {
+        out.put(this.make(binding).getBytes(StandardCharsets.UTF_8));
+    }
+
 }
@@ -1,9 +1,13 @@
 package com.jessebrault.gst;
 
+import com.jessebrault.gst.util.ExecutorUtil;
 import com.jessebrault.gst.util.Result;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 public interface TemplateCreator {
 
@@ -13,4 +17,60 @@ public interface TemplateCreator {
         return this.create(input, List.of());
     }
 
+    /**
+     * Runs create() on the given executor, so that the caller never blocks on tokenizing, parsing or
+     * compiling.
+     */
+    default CompletableFuture<Result<Template>> createAsync(
+            CharSequence input,
+            Collection<String> customImportStatements,
+            Executor executor
+    ) {
+        return CompletableFuture.supplyAsync(() -> this.create(input, customImportStatements), executor);
+    }
+
+    /**
+     * Runs create() on ExecutorUtil.getDefaultExecutor(), which uses virtual threads if available.
+     */
+    default CompletableFuture<Result<Template>> createAsync(
+            CharSequence input,
+            Collection<String> customImportStatements
+    ) {
+        return this.createAsync(input, customImportStatements, ExecutorUtil.getDefaultExecutor());
+    }
+
+    default CompletableFuture<Result<Template>> createAsync(CharSequence input) {
+        return this.createAsync(input, List.of());
+    }
+
+    /**
+     * Creates all the inputs at once, each on its own task on the given executor.
+     *
+     * @return the Results, in the same order as the inputs.
+     */
+    default CompletableFuture<List<Result<Template>>> createAll(
+            List<? extends CharSequence> inputs,
+            Collection<String> customImportStatements,
+            Executor executor
+    ) {
+        final List<CompletableFuture<Result<Template>>> futures = new ArrayList<>(inputs.size());
+        for (final CharSequence input : inputs) {
+            futures.add(this.createAsync(input, customImportStatements, executor));
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).thenApply(ignored -> {
+            final List<Result<Template>> results = new ArrayList<>(futures.size());
+            for (final var future : futures) {
+                results.add(future.join());
+            }
+            return results;
+        });
+    }
+
+    default CompletableFuture<List<Result<Template>>> createAll(
+            List<? extends CharSequence> inputs,
+            Collection<String> customImportStatements
+    ) {
+        return this.createAll(inputs, customImportStatements, ExecutorUtil.getDefaultExecutor());
+    }
+
 }
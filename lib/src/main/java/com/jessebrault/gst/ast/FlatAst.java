@@ -0,0 +1,220 @@
+package com.jessebrault.gst.ast;
+
+import com.jessebrault.gst.tokenizer.TokenType;
+import com.jessebrault.gst.util.Diagnostic;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An AST stored in parallel primitive arrays instead of one object per node. Node 0 is the root;
+ * -1 stands for no node. Tree nodes span from the start of their first leaf to the end of their
+ * last leaf. Diagnostics are kept in a side table holding only the nodes which have any.
+ *
+ * Walk it with a Cursor, or convert it to a TreeNode with toTreeNode() for AstVisitor consumers.
+ */
+public final class FlatAst {
+
+    private static final TreeNodeType[] treeNodeTypes = TreeNodeType.values();
+    private static final TokenType[] tokenTypes = TokenType.values();
+
+    /**
+     * @return the kind to store for a tree node; tree node kinds are negative.
+     */
+    public static int treeKind(TreeNodeType type) {
+        return -1 - type.ordinal();
+    }
+
+    /**
+     * @return the kind to store for a leaf node; leaf node kinds are non-negative.
+     */
+    public static int leafKind(TokenType type) {
+        return type.ordinal();
+    }
+
+    private final int size;
+    private final int[] kinds;
+    private final int[] starts;
+    private final int[] ends;
+    private final int[] firstChildren;
+    private final int[] nextSiblings;
+    private final int[] parents;
+    private final Map<Integer, Collection<Diagnostic>> diagnostics;
+
+    /**
+     * The arrays are not copied and must not be changed afterwards.
+     */
+    public FlatAst(
+            int size,
+            int[] kinds,
+            int[] starts,
+            int[] ends,
+            int[] firstChildren,
+            int[] nextSiblings,
+            int[] parents,
+            Map<Integer, Collection<Diagnostic>> diagnostics
+    ) {
+        this.size = size;
+        this.kinds = kinds;
+        this.starts = starts;
+        this.ends = ends;
+        this.firstChildren = firstChildren;
+        this.nextSiblings = nextSiblings;
+        this.parents = parents;
+        this.diagnostics = diagnostics;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    private int checkNode(int node) {
+        if (node < 0 || node >= this.size) {
+            throw new IndexOutOfBoundsException("node: " + node + ", size: " + this.size);
+        }
+        return node;
+    }
+
+    public boolean isLeaf(int node) {
+        return this.kinds[this.checkNode(node)] >= 0;
+    }
+
+    public TreeNodeType getTreeNodeType(int node) {
+        final int kind = this.kinds[this.checkNode(node)];
+        if (kind >= 0) {
+            throw new IllegalArgumentException("node " + node + " is a leaf");
+        }
+        return treeNodeTypes[-1 - kind];
+    }
+
+    public TokenType getTokenType(int node) {
+        final int kind = this.kinds[this.checkNode(node)];
+        if (kind < 0) {
+            throw new IllegalArgumentException("node " + node + " is not a leaf");
+        }
+        return tokenTypes[kind];
+    }
+
+    public int getStart(int node) {
+        return this.starts[this.checkNode(node)];
+    }
+
+    public int getEnd(int node) {
+        return this.ends[this.checkNode(node)];
+    }
+
+    public int getFirstChild(int node) {
+        return this.firstChildren[this.checkNode(node)];
+    }
+
+    public int getNextSibling(int node) {
+        return this.nextSiblings[this.checkNode(node)];
+    }
+
+    public int getParent(int node) {
+        return this.parents[this.checkNode(node)];
+    }
+
+    public Collection<Diagnostic> getDiagnostics(int node) {
+        return this.diagnostics.getOrDefault(this.checkNode(node), List.of());
+    }
+
+    /**
+     * @return true if any node in this AST has diagnostics.
+     */
+    public boolean hasDiagnostics() {
+        return !this.diagnostics.isEmpty();
+    }
+
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    public AstNode toTreeNode() {
+        return this.toAstNode(0);
+    }
+
+    private AstNode toAstNode(int node) {
+        if (this.isLeaf(node)) {
+            return new LeafNode(this.getDiagnostics(node), this.getTokenType(node), this.starts[node], this.ends[node]);
+        }
+        final List<AstNode> children = new ArrayList<>();
+        for (int child = this.firstChildren[node]; child != -1; child = this.nextSiblings[child]) {
+            children.add(this.toAstNode(child));
+        }
+        return new TreeNode(this.getDiagnostics(node), this.getTreeNodeType(node), children);
+    }
+
+    /**
+     * A movable position in the FlatAst, starting at the root. The move methods return false,
+     * and do not move, if there is no such node.
+     */
+    public final class Cursor {
+
+        private int node;
+
+        private Cursor() {}
+
+        public int getNode() {
+            return this.node;
+        }
+
+        public boolean isLeaf() {
+            return FlatAst.this.isLeaf(this.node);
+        }
+
+        public TreeNodeType getTreeNodeType() {
+            return FlatAst.this.getTreeNodeType(this.node);
+        }
+
+        public TokenType getTokenType() {
+            return FlatAst.this.getTokenType(this.node);
+        }
+
+        public int getStart() {
+            return FlatAst.this.getStart(this.node);
+        }
+
+        public int getEnd() {
+            return FlatAst.this.getEnd(this.node);
+        }
+
+        public Collection<Diagnostic> getDiagnostics() {
+            return FlatAst.this.getDiagnostics(this.node);
+        }
+
+        private boolean moveTo(int target) {
+            if (target == -1) {
+                return false;
+            }
+            this.node = target;
+            return true;
+        }
+
+        public boolean toFirstChild() {
+            return this.moveTo(FlatAst.this.getFirstChild(this.node));
+        }
+
+        public boolean toNextSibling() {
+            return this.moveTo(FlatAst.this.getNextSibling(this.node));
+        }
+
+        public boolean toParent() {
+            return this.moveTo(FlatAst.this.getParent(this.node));
+        }
+
+        @Override
+        public String toString() {
+            return "FlatAst.Cursor(node: " + this.node + ")";
+        }
+
+    }
+
+    @Override
+    public String toString() {
+        return "FlatAst(size: " + this.size + ")";
+    }
+
+}
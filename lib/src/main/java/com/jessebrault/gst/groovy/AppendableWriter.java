@@ -0,0 +1,59 @@
+package com.jessebrault.gst.groovy;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.CharBuffer;
+
+/**
+ * Lets the template closure, which takes a Writer, write to any Appendable. Closing does not close
+ * the Appendable.
+ */
+final class AppendableWriter extends Writer {
+
+    private final Appendable out;
+
+    AppendableWriter(Appendable out) {
+        this.out = out;
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+        this.out.append((char) c);
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        this.out.append(CharBuffer.wrap(cbuf, off, len));
+    }
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+        this.out.append(str, off, off + len);
+    }
+
+    @Override
+    public Writer append(CharSequence csq) throws IOException {
+        this.out.append(csq);
+        return this;
+    }
+
+    @Override
+    public Writer append(CharSequence csq, int start, int end) throws IOException {
+        this.out.append(csq, start, end);
+        return this;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (this.out instanceof Flushable flushable) {
+            flushable.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.flush();
+    }
+
+}
@@ -0,0 +1,66 @@
+package com.jessebrault.gst.groovy;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Collects the typed binding declarations of a template for the GroovyAstToScriptTransformer and the
+ * GroovyScriptParserAccumulator. They are written in an import block starting with {@code binding},
+ * separated by semicolons or new lines, e.g. {@code <%@ binding String name; List<Integer> numbers %>};
+ * a declaration without a type is an Object. Other import block bodies are import statements, and go
+ * to the header as they are.
+ *
+ * Each declared binding becomes a local variable of the render method, read from the binding once
+ * per render with a Groovy cast, so that a statically compiled template knows its type. Assigning
+ * to it does not change the binding.
+ */
+final class BindingDeclarationCollector {
+
+    private static final String keyword = "binding";
+
+    private final List<String> types = new ArrayList<>();
+    private final List<String> names = new ArrayList<>();
+
+    void appendImportBlockBody(StringBuilder header, CharSequence text, int start, int end) {
+        final var body = text.subSequence(start, end).toString();
+        final var trimmed = body.strip();
+        if (!trimmed.startsWith(keyword)
+                || trimmed.length() == keyword.length()
+                || !Character.isWhitespace(trimmed.charAt(keyword.length()))) {
+            header.append(body).append("\n");
+            return;
+        }
+        for (final String declaration : trimmed.substring(keyword.length()).split("[;\n]")) {
+            final var trimmedDeclaration = declaration.strip();
+            if (trimmedDeclaration.isEmpty()) {
+                continue;
+            }
+            int nameStart = trimmedDeclaration.length();
+            while (nameStart > 0 && !Character.isWhitespace(trimmedDeclaration.charAt(nameStart - 1))) {
+                nameStart--;
+            }
+            final var type = trimmedDeclaration.substring(0, nameStart).strip();
+            this.types.add(type.isEmpty() ? "Object" : type);
+            this.names.add(trimmedDeclaration.substring(nameStart));
+        }
+    }
+
+    /**
+     * Writes the local variables of the declared bindings; must be called at the start of the render
+     * method.
+     */
+    void appendDeclarations(StringBuilder b, String indent) {
+        for (int i = 0; i < this.names.size(); i++) {
+            final var type = this.types.get(i);
+            final var name = this.names.get(i);
+            b.append(indent).append(type).append(' ').append(name)
+                    .append(" = (").append(type).append(") getBindingVariable('").append(name).append("')\n");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "BindingDeclarationCollector(names: " + this.names + ")";
+    }
+
+}
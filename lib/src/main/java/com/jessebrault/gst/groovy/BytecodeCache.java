@@ -0,0 +1,263 @@
+package com.jessebrault.gst.groovy;
+
+import groovy.lang.GroovySystem;
+import org.codehaus.groovy.tools.GroovyClass;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * Stores the compiled classes of templates, and the resources they need, in a directory, one file
+ * per template, so that they survive restarts. Files are written to a temporary file first and then atomically moved into
+ * place, so several JVMs may share one directory.
+ *
+ * Entries are never invalidated, but their keys include the Groovy and gst versions. Without an
+ * Implementation-Version in its manifest, e.g. when run from a build directory, the gst version is a
+ * hash of its own classes; if those cannot be read, there is no cache; see isAvailable(). Classes that
+ * templates import are not part of the key, so clear the directory when those change in
+ * incompatible ways.
+ */
+final class BytecodeCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(BytecodeCache.class);
+
+    private static final int magic = 0x67737463; // "gstc"
+    private static final int formatVersion = 2;
+    private static final String suffix = ".gstc";
+
+    private static final String libraryPackagePath = "com/jessebrault/gst/";
+    private static final @Nullable String libraryVersion = findLibraryVersion();
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static @Nullable String findLibraryVersion() {
+        final var version = BytecodeCache.class.getPackage().getImplementationVersion();
+        if (version != null) {
+            return version;
+        }
+        try {
+            final CodeSource codeSource = BytecodeCache.class.getProtectionDomain().getCodeSource();
+            if (codeSource == null) {
+                logger.warn("Unable to find the gst classes; not caching template classes");
+                return null;
+            }
+            final MessageDigest digest = newDigest();
+            final Path location = Path.of(codeSource.getLocation().toURI());
+            if (Files.isDirectory(location)) {
+                final Path packageDirectory = location.resolve(libraryPackagePath);
+                final List<Path> classFiles;
+                try (final var paths = Files.walk(packageDirectory)) {
+                    classFiles = paths.filter(path -> path.toString().endsWith(".class")).sorted().toList();
+                }
+                for (final Path classFile : classFiles) {
+                    // named as in a jar
+                    final var name = location.relativize(classFile).toString().replace(File.separatorChar, '/');
+                    digest.update(name.getBytes(StandardCharsets.UTF_8));
+                    digest.update(Files.readAllBytes(classFile));
+                }
+            } else {
+                try (final var jarFile = new JarFile(location.toFile())) {
+                    final List<JarEntry> classEntries = jarFile.stream()
+                            .filter(entry -> entry.getName().startsWith(libraryPackagePath)
+                                    && entry.getName().endsWith(".class"))
+                            .sorted(Comparator.comparing(JarEntry::getName))
+                            .toList();
+                    for (final JarEntry classEntry : classEntries) {
+                        digest.update(classEntry.getName().getBytes(StandardCharsets.UTF_8));
+                        try (final var in = jarFile.getInputStream(classEntry)) {
+                            digest.update(in.readAllBytes());
+                        }
+                    }
+                }
+            }
+            return "classes-" + HexFormat.of().formatHex(digest.digest());
+        } catch (IOException | URISyntaxException | RuntimeException e) {
+            logger.warn("Unable to hash the gst classes; not caching template classes", e);
+            return null;
+        }
+    }
+
+    /**
+     * @return false if the gst version cannot be determined, in which case entries could outlive the
+     * code which compiled them, so nothing may be cached.
+     */
+    static boolean isAvailable() {
+        return libraryVersion != null;
+    }
+
+    private final Path directory;
+
+    BytecodeCache(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * @param creatorClass the class of the creator, which may be a subclass generating other scripts.
+     */
+    String getKey(
+            CharSequence input,
+            Collection<String> customImportStatements,
+            Class<?> creatorClass,
+            Class<?> parserClass,
+            Class<?> tokenizerClass,
+            boolean compileStatic
+    ) {
+        if (libraryVersion == null) {
+            throw new IllegalStateException("the cache is not available");
+        }
+        final MessageDigest digest = newDigest();
+        for (final String part : List.of(
+                String.valueOf(formatVersion),
+                GroovySystem.getVersion(),
+                libraryVersion,
+                creatorClass.getName(),
+                parserClass.getName(),
+                tokenizerClass.getName(),
+                String.valueOf(compileStatic)
+        )) {
+            digest.update(part.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+        }
+        for (final String importStatement : customImportStatements) {
+            digest.update(importStatement.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) '\n');
+        }
+        digest.update((byte) 0);
+        digest.update(input.toString().getBytes(StandardCharsets.UTF_8));
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * @return the compiled template, or null if there is no entry or it cannot be read.
+     */
+    @Nullable CompiledTemplate read(String key) {
+        final byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(this.directory.resolve(key + suffix));
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            logger.warn("Unable to read cached template classes for key {}", key, e);
+            return null;
+        }
+        try (final var in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            if (in.readInt() != magic || in.readInt() != formatVersion) {
+                logger.warn("Ignoring cached template classes for key {} in an unknown format", key);
+                return null;
+            }
+            final var scriptName = in.readUTF();
+            final int classCount = in.readInt();
+            final List<GroovyClass> classes = new ArrayList<>(classCount);
+            for (int i = 0; i < classCount; i++) {
+                final var name = in.readUTF();
+                classes.add(new GroovyClass(name, readBytes(in)));
+            }
+            final int resourceCount = in.readInt();
+            final Map<String, byte[]> resources = new HashMap<>();
+            for (int i = 0; i < resourceCount; i++) {
+                final var name = in.readUTF();
+                resources.put(name, readBytes(in));
+            }
+            return new CompiledTemplate(scriptName, classes, resources);
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Ignoring corrupt cached template classes for key {}", key, e);
+            return null;
+        }
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        final var bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Failures are only logged, as the classes can always be compiled again.
+     */
+    void write(String key, CompiledTemplate compiledTemplate) {
+        final var out = new ByteArrayOutputStream();
+        try (final var dataOut = new DataOutputStream(out)) {
+            dataOut.writeInt(magic);
+            dataOut.writeInt(formatVersion);
+            dataOut.writeUTF(compiledTemplate.getScriptName());
+            dataOut.writeInt(compiledTemplate.getClasses().size());
+            for (final GroovyClass groovyClass : compiledTemplate.getClasses()) {
+                dataOut.writeUTF(groovyClass.getName());
+                writeBytes(dataOut, groovyClass.getBytes());
+            }
+            dataOut.writeInt(compiledTemplate.getResources().size());
+            for (final var resource : compiledTemplate.getResources().entrySet()) {
+                dataOut.writeUTF(resource.getKey());
+                writeBytes(dataOut, resource.getValue());
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // a ByteArrayOutputStream never throws
+        }
+
+        Path tempFile = null;
+        try {
+            Files.createDirectories(this.directory);
+            tempFile = Files.createTempFile(this.directory, key, ".tmp");
+            Files.write(tempFile, out.toByteArray());
+            try {
+                Files.move(tempFile, this.directory.resolve(key + suffix), StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                logger.warn("Atomic moves are not supported in {}; not caching template classes", this.directory);
+            }
+        } catch (IOException e) {
+            // e.g. another JVM moved the same entry into place first on a platform which will not replace it
+            logger.warn("Unable to cache template classes for key {}", key, e);
+        } finally {
+            if (tempFile != null) {
+                try {
+                    Files.deleteIfExists(tempFile);
+                } catch (IOException e) {
+                    logger.warn("Unable to delete temporary file {}", tempFile, e);
+                }
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "BytecodeCache(directory: " + this.directory + ")";
+    }
+
+}
@@ -0,0 +1,104 @@
+package com.jessebrault.gst.groovy;
+
+import com.jessebrault.gst.Template;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Map;
+
+/**
+ * Renders with the render method which the GroovyAstToBytecodeTransformer wrote. Its class is
+ * defined as a hidden class, which needs no loader of its own and is unloaded with the template.
+ */
+final class BytecodeTemplate implements Template {
+
+    private static final MethodType renderType = MethodType.fromMethodDescriptorString(
+            GroovyAstToBytecodeTransformer.renderDescriptor,
+            BytecodeTemplate.class.getClassLoader()
+    );
+
+    private final MethodHandle render;
+    private final String staticText;
+    private final Utf8Writer.StaticText encodedStaticText;
+
+    BytecodeTemplate(GroovyAstToBytecodeTransformer transformer) throws IllegalAccessException {
+        final MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(transformer.getResult(), true);
+        try {
+            this.render = lookup.findStatic(lookup.lookupClass(), "render", renderType);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(e);
+        }
+        this.staticText = transformer.getStaticText();
+        this.encodedStaticText = Utf8Writer.StaticText.encode(this.staticText, transformer.getStaticTextOffsets());
+    }
+
+    private void render(Map<String, ?> binding, Writer out) throws IOException {
+        try {
+            this.render.invokeExact(binding, out, this.staticText);
+        } catch (IOException | RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e); // render only throws an IOException
+        }
+    }
+
+    @Override
+    public String make(Map<String, ?> binding) {
+        final Writer w = new StringWriter();
+        try {
+            this.render(binding, w);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return w.toString();
+    }
+
+    @Override
+    public void make(Map<String, ?> binding, Appendable out) throws IOException {
+        this.render(binding, out instanceof Writer writer ? writer : new AppendableWriter(out));
+    }
+
+    private void renderUtf8(Map<String, ?> binding, Utf8Writer.ByteSink sink) throws IOException {
+        final var writer = new Utf8Writer(this.encodedStaticText, sink);
+        this.render(binding, writer);
+        writer.finish();
+    }
+
+    @Override
+    public void makeUtf8(Map<String, ?> binding, OutputStream out) throws IOException {
+        this.renderUtf8(binding, out::write);
+    }
+
+    @Override
+    public void makeUtf8(Map<String, ?> binding, WritableByteChannel out) throws IOException {
+        this.renderUtf8(binding, (b, off, len) -> {
+            final ByteBuffer bytes = ByteBuffer.wrap(b, off, len);
+            while (bytes.hasRemaining()) {
+                out.write(bytes);
+            }
+        });
+    }
+
+    @Override
+    public void makeUtf8(Map<String, ?> binding, ByteBuffer out) {
+        try {
+            this.renderUtf8(binding, out::put);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // a ByteBuffer never throws one
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "BytecodeTemplate(staticText: " + this.staticText.length() + " chars)";
+    }
+
+}
@@ -0,0 +1,55 @@
+package com.jessebrault.gst.groovy;
+
+import groovy.lang.GroovyClassLoader;
+import org.codehaus.groovy.ast.ClassNode;
+import org.codehaus.groovy.ast.ModuleNode;
+import org.codehaus.groovy.control.CompilationUnit;
+import org.codehaus.groovy.control.CompilerConfiguration;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * How the generated scripts are compiled, by the GroovyTemplateCreator and the
+ * GroovyTemplatePrecompiler alike.
+ */
+final class CompilationUtil {
+
+    private static final CompilerConfiguration compilerConfiguration = new CompilerConfiguration();
+
+    static {
+        compilerConfiguration.addCompilationCustomizers(
+                new ExpressionClosureInliner(),
+                new RenderMethodSplitter(), // after inlining, which changes the sizes
+                new StaticTextExternalizer()
+        );
+    }
+
+    static CompilationUnit newCompilationUnit(ClassLoader parentClassLoader) {
+        return new CompilationUnit(compilerConfiguration, null, new GroovyClassLoader(parentClassLoader));
+    }
+
+    /**
+     * @return the resources which the compiled classes of the unit need at runtime, by their names
+     * as for ClassLoader.getResource(); they belong next to the classes.
+     */
+    static Map<String, byte[]> getResources(CompilationUnit unit) {
+        final Map<String, byte[]> resources = new HashMap<>();
+        for (final ModuleNode moduleNode : unit.getAST().getModules()) {
+            for (final ClassNode classNode : moduleNode.getClasses()) {
+                final String staticText = StaticTextExternalizer.getStaticText(classNode);
+                if (staticText != null) {
+                    resources.put(
+                            classNode.getName().replace('.', '/') + StaticTextExternalizer.resourceSuffix,
+                            staticText.getBytes(StandardCharsets.UTF_8)
+                    );
+                }
+            }
+        }
+        return resources;
+    }
+
+    private CompilationUtil() {}
+
+}
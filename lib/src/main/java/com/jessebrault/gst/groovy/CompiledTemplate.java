@@ -0,0 +1,45 @@
+package com.jessebrault.gst.groovy;
+
+import org.codehaus.groovy.tools.GroovyClass;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The compiled classes of one template script, and the resources they need; see
+ * CompilationUtil.getResources().
+ */
+final class CompiledTemplate {
+
+    private final String scriptName;
+    private final List<GroovyClass> classes;
+    private final Map<String, byte[]> resources;
+
+    CompiledTemplate(String scriptName, List<GroovyClass> classes, Map<String, byte[]> resources) {
+        this.scriptName = scriptName;
+        this.classes = classes;
+        this.resources = resources;
+    }
+
+    /**
+     * @return the simple name of the script class, e.g. groovyTemplateScript0.
+     */
+    String getScriptName() {
+        return this.scriptName;
+    }
+
+    List<GroovyClass> getClasses() {
+        return this.classes;
+    }
+
+    Map<String, byte[]> getResources() {
+        return this.resources;
+    }
+
+    @Override
+    public String toString() {
+        return "CompiledTemplate(scriptName: " + this.scriptName + ", classes: " + this.classes.size()
+                + ", resources: " + this.resources.keySet() + ")";
+    }
+
+}
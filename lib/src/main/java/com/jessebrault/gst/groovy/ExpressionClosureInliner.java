@@ -0,0 +1,134 @@
+package com.jessebrault.gst.groovy;
+
+import org.codehaus.groovy.ast.ClassCodeExpressionTransformer;
+import org.codehaus.groovy.ast.ClassNode;
+import org.codehaus.groovy.ast.CodeVisitorSupport;
+import org.codehaus.groovy.ast.MethodNode;
+import org.codehaus.groovy.ast.expr.ArgumentListExpression;
+import org.codehaus.groovy.ast.expr.BinaryExpression;
+import org.codehaus.groovy.ast.expr.ClosureExpression;
+import org.codehaus.groovy.ast.expr.DeclarationExpression;
+import org.codehaus.groovy.ast.expr.Expression;
+import org.codehaus.groovy.ast.expr.MethodCallExpression;
+import org.codehaus.groovy.ast.expr.VariableExpression;
+import org.codehaus.groovy.ast.stmt.BlockStatement;
+import org.codehaus.groovy.ast.stmt.ExpressionStatement;
+import org.codehaus.groovy.ast.stmt.ReturnStatement;
+import org.codehaus.groovy.ast.stmt.Statement;
+import org.codehaus.groovy.classgen.GeneratorContext;
+import org.codehaus.groovy.control.CompilePhase;
+import org.codehaus.groovy.control.SourceUnit;
+import org.codehaus.groovy.control.customizers.CompilationCustomizer;
+import org.codehaus.groovy.syntax.Types;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Set;
+
+/**
+ * Compiles the {@code out << { expression }()} written for expression and dollar scriptlets as
+ * {@code out << expression}, so that rendering does not create and call a closure per expression.
+ * Bodies of several statements, which declare a variable, e.g. {@code def y = 1}, or which refer to
+ * the closure itself, e.g. by {@code it}, keep their closure, in which the variable is local or the
+ * reference resolves.
+ */
+final class ExpressionClosureInliner extends CompilationCustomizer {
+
+    private static final Set<String> closureVariableNames = Set.of("it", "owner", "delegate", "thisObject");
+
+    ExpressionClosureInliner() {
+        super(CompilePhase.CONVERSION);
+    }
+
+    @Override
+    public void call(SourceUnit source, GeneratorContext context, ClassNode classNode) {
+        if (!classNode.isScript()) {
+            return;
+        }
+        final var transformer = new ClassCodeExpressionTransformer() {
+
+            @Override
+            protected SourceUnit getSourceUnit() {
+                return source;
+            }
+
+            @Override
+            public Expression transform(Expression expression) {
+                if (expression instanceof ClosureExpression closureExpression) {
+                    closureExpression.getCode().visit(this);
+                    return closureExpression;
+                }
+                if (expression instanceof BinaryExpression binaryExpression && isWriteToOut(binaryExpression)) {
+                    final Expression inlined = getInlined(binaryExpression.getRightExpression());
+                    if (inlined != null) {
+                        binaryExpression.setRightExpression(inlined);
+                    }
+                }
+                return super.transform(expression);
+            }
+
+        };
+        for (final MethodNode methodNode : classNode.getMethods("renderTemplate")) {
+            transformer.visitMethod(methodNode);
+        }
+    }
+
+    private static boolean isWriteToOut(BinaryExpression binaryExpression) {
+        return binaryExpression.getOperation().getType() == Types.LEFT_SHIFT
+                && binaryExpression.getLeftExpression() instanceof VariableExpression variableExpression
+                && variableExpression.getName().equals("out");
+    }
+
+    private static @Nullable Expression getInlined(Expression expression) {
+        if (!(expression instanceof MethodCallExpression call)
+                || !(call.getObjectExpression() instanceof ClosureExpression closureExpression)
+                || !call.getMethodAsString().equals("call")
+                || !(call.getArguments() instanceof ArgumentListExpression arguments)
+                || !arguments.getExpressions().isEmpty()
+                || closureExpression.isParameterSpecified()
+                || !(closureExpression.getCode() instanceof BlockStatement block)
+                || block.getStatements().size() != 1) {
+            return null;
+        }
+        final Statement statement = block.getStatements().get(0);
+        final Expression inlined;
+        if (statement instanceof ExpressionStatement expressionStatement) {
+            inlined = expressionStatement.getExpression();
+        } else if (statement instanceof ReturnStatement returnStatement) {
+            inlined = returnStatement.getExpression();
+        } else {
+            return null;
+        }
+        return needsClosure(inlined) ? null : inlined;
+    }
+
+    /**
+     * @return true if the expression, outside any nested closures, refers to the closure or declares a
+     * variable, which inlined would be in the scope of renderTemplate() and clash with the same
+     * declaration in another scriptlet.
+     */
+    private static boolean needsClosure(Expression expression) {
+        final boolean[] needs = { false };
+        expression.visit(new CodeVisitorSupport() {
+
+            @Override
+            public void visitVariableExpression(VariableExpression variableExpression) {
+                if (closureVariableNames.contains(variableExpression.getName())) {
+                    needs[0] = true;
+                }
+            }
+
+            @Override
+            public void visitDeclarationExpression(DeclarationExpression declarationExpression) {
+                needs[0] = true;
+            }
+
+            @Override
+            public void visitClosureExpression(ClosureExpression closureExpression) {
+                // a nested closure has an it, owner and delegate of its own
+            }
+
+        });
+        return needs[0];
+    }
+
+}
@@ -0,0 +1,256 @@
+package com.jessebrault.gst.groovy;
+
+import com.jessebrault.gst.ast.AbstractAstVisitor;
+import com.jessebrault.gst.ast.LeafNode;
+import com.jessebrault.gst.ast.TreeNode;
+import groovyjarjarasm.asm.ClassWriter;
+import groovyjarjarasm.asm.MethodVisitor;
+import groovyjarjarasm.asm.Opcodes;
+import groovyjarjarasm.asm.Type;
+import org.codehaus.groovy.runtime.FormatHelper;
+import org.codehaus.groovy.runtime.InvokerHelper;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Writes the class file of a render method straight from the AST of a template made only of text
+ * and dollar references, such as {@code Hello, $user.name!}, so that no script is generated, parsed
+ * or compiled. Any other node, e.g. a scriptlet, makes the template unsupported; see isSupported().
+ *
+ * The method renders as the script of the GroovyAstToScriptTransformer does: the static text is
+ * written from one backing String, a reference is looked up in the binding Map, its properties with
+ * InvokerHelper.getProperty(), and the value is written with FormatHelper.write(), as
+ * {@code out << value} does. It is not a GroovyObject, so no MetaClass is made for it.
+ *
+ * The class file is written with the copy of ASM which Groovy repackages as groovyjarjarasm, so gst
+ * needs no ASM of its own, but depends on that internal package of the Groovy jar.
+ */
+final class GroovyAstToBytecodeTransformer extends AbstractAstVisitor {
+
+    // names which a script would not look up in the binding
+    private static final Set<String> unsupportedNames = Set.of(
+            "out", "this", "super", "true", "false", "null", "as", "assert", "break", "case", "catch",
+            "class", "const", "continue", "def", "default", "do", "else", "enum", "extends", "finally",
+            "for", "goto", "if", "implements", "import", "in", "instanceof", "interface", "new", "package",
+            "return", "switch", "throw", "throws", "trait", "try", "var", "void", "while", "boolean",
+            "byte", "char", "short", "int", "long", "float", "double", "record", "sealed", "permits",
+            "yield"
+    );
+
+    // well below the 64 KB limit of a method
+    private static final int maxCodeSize = 60000;
+
+    static final String renderDescriptor = Type.getMethodDescriptor(
+            Type.VOID_TYPE,
+            Type.getType(Map.class),
+            Type.getType(Writer.class),
+            Type.getType(String.class)
+    );
+
+    // in this package, as a hidden class must be
+    private static final String className = "com/jessebrault/gst/groovy/BytecodeTemplateRenderer";
+    private static final String mapType = Type.getInternalName(Map.class);
+    private static final String writerType = Type.getInternalName(Writer.class);
+    private static final String invokerHelperType = Type.getInternalName(InvokerHelper.class);
+    private static final String formatHelperType = Type.getInternalName(FormatHelper.class);
+
+    private final CharSequence text;
+
+    private final StringBuilder staticText = new StringBuilder();
+    private final List<Integer> offsets = new ArrayList<>(List.of(0));
+    // for each write in order: a String[] of the reference and its properties, or null for static text
+    private final List<String[]> writes = new ArrayList<>();
+    private int pendingStart = -1;
+    private int codeSize;
+    private boolean supported = true;
+
+    /**
+     * @return true if a script looks the name up in the binding, rather than being a keyword, its
+     * own out or one of its gst fields.
+     */
+    static boolean isBindingName(String name) {
+        return !unsupportedNames.contains(name) && !name.startsWith("gst");
+    }
+
+    /**
+     * @return true if a script looks the head of the path up in the binding and the rest up as its
+     * properties. Groovy tries to resolve any part not starting with a lowercase letter as a class,
+     * e.g. Math in {@code Math.PI} or {@code java.lang.Math.PI}, so such paths are not.
+     */
+    static boolean isBindingPath(String[] path) {
+        if (!isBindingName(path[0])) {
+            return false;
+        }
+        for (final String part : path) {
+            if (!Character.isLowerCase(part.charAt(0))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    GroovyAstToBytecodeTransformer(CharSequence text) {
+        this.text = text;
+    }
+
+    @Override
+    public void visitGString(TreeNode node) {
+        super.visitGString(node);
+        this.endPendingText();
+    }
+
+    private void endPendingText() {
+        if (this.pendingStart != -1) {
+            this.offsets.add(this.staticText.length());
+            this.writes.add(null);
+            this.codeSize += 11;
+            this.pendingStart = -1;
+        }
+    }
+
+    @Override
+    public void visitBlockScriptlet(TreeNode node) {
+        this.supported = false;
+    }
+
+    @Override
+    public void visitExpressionScriptlet(TreeNode node) {
+        this.supported = false;
+    }
+
+    @Override
+    public void visitImportBlock(TreeNode node) {
+        this.supported = false;
+    }
+
+    @Override
+    public void visitDollarScriptlet(TreeNode node) {
+        this.supported = false;
+    }
+
+    @Override
+    public void visitText(LeafNode node) {
+        if (node.getTokenStart() == node.getTokenEnd()) {
+            return;
+        }
+        if (this.pendingStart == -1) {
+            this.pendingStart = this.staticText.length();
+        }
+        this.staticText.append(this.text, node.getTokenStart(), node.getTokenEnd());
+    }
+
+    @Override
+    public void visitDollarReferenceBody(LeafNode node) {
+        this.endPendingText();
+        final String[] path = this.text.subSequence(node.getTokenStart(), node.getTokenEnd()).toString().split("\\.");
+        if (!isBindingPath(path)) {
+            this.supported = false;
+        }
+        this.writes.add(path);
+        this.codeSize += 13 + 6 * path.length;
+    }
+
+    /**
+     * @return false if the template has anything but text and dollar references, or is too large for
+     * one method; it is then up to the GroovyAstToScriptTransformer.
+     */
+    boolean isSupported() {
+        return this.supported && this.codeSize <= maxCodeSize;
+    }
+
+    String getStaticText() {
+        return this.staticText.toString();
+    }
+
+    int[] getStaticTextOffsets() {
+        return this.offsets.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * @return a class in this package with {@code public static void render(Map binding, Writer out,
+     * String staticText)}, to be defined as a hidden class; see BytecodeTemplate.
+     */
+    byte[] getResult() {
+        if (!this.isSupported()) {
+            throw new IllegalStateException("the template is not supported");
+        }
+        final var classWriter = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        classWriter.visit(
+                Opcodes.V17,
+                Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL | Opcodes.ACC_SUPER,
+                className,
+                null,
+                Type.getInternalName(Object.class),
+                null
+        );
+        final MethodVisitor render = classWriter.visitMethod(
+                Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC,
+                "render",
+                renderDescriptor,
+                null,
+                new String[] { Type.getInternalName(IOException.class) }
+        );
+        render.visitCode();
+        int textIndex = 0;
+        for (final String[] path : this.writes) {
+            render.visitVarInsn(Opcodes.ALOAD, 1);
+            if (path == null) {
+                final int start = this.offsets.get(textIndex);
+                final int end = this.offsets.get(++textIndex);
+                render.visitVarInsn(Opcodes.ALOAD, 2);
+                pushInt(render, start);
+                pushInt(render, end - start);
+                render.visitMethodInsn(Opcodes.INVOKEVIRTUAL, writerType, "write", "(Ljava/lang/String;II)V", false);
+            } else {
+                render.visitVarInsn(Opcodes.ALOAD, 0);
+                render.visitLdcInsn(path[0]);
+                render.visitMethodInsn(Opcodes.INVOKEINTERFACE, mapType, "get", "(Ljava/lang/Object;)Ljava/lang/Object;", true);
+                for (int i = 1; i < path.length; i++) {
+                    render.visitLdcInsn(path[i]);
+                    render.visitMethodInsn(
+                            Opcodes.INVOKESTATIC,
+                            invokerHelperType,
+                            "getProperty",
+                            "(Ljava/lang/Object;Ljava/lang/String;)Ljava/lang/Object;",
+                            false
+                    );
+                }
+                render.visitMethodInsn(
+                        Opcodes.INVOKESTATIC,
+                        formatHelperType,
+                        "write",
+                        "(Ljava/io/Writer;Ljava/lang/Object;)V",
+                        false
+                );
+            }
+        }
+        render.visitInsn(Opcodes.RETURN);
+        render.visitMaxs(0, 0);
+        render.visitEnd();
+        classWriter.visitEnd();
+        return classWriter.toByteArray();
+    }
+
+    private static void pushInt(MethodVisitor methodVisitor, int value) {
+        if (value >= -1 && value <= 5) {
+            methodVisitor.visitInsn(Opcodes.ICONST_0 + value);
+        } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            methodVisitor.visitIntInsn(Opcodes.BIPUSH, value);
+        } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            methodVisitor.visitIntInsn(Opcodes.SIPUSH, value);
+        } else {
+            methodVisitor.visitLdcInsn(value);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "GroovyAstToBytecodeTransformer(writes: " + this.writes.size() + ", supported: " + this.supported + ")";
+    }
+
+}
@@ -12,13 +12,25 @@ public final class GroovyAstToScriptTransformer extends AbstractAstVisitor {
 
     private final Collection<String> importStatements;
     private final CharSequence text;
+    private final boolean compileStatic;
 
     private final StringBuilder b = new StringBuilder();
+    private final StaticTextCollector staticText = new StaticTextCollector();
+    private final BindingDeclarationCollector bindingDeclarations = new BindingDeclarationCollector();
     private int indentIndex = 0;
 
     public GroovyAstToScriptTransformer(Collection<String> importStatements, CharSequence text) {
+        this(importStatements, text, false);
+    }
+
+    /**
+     * @param compileStatic whether to compile the render method with {@code @CompileStatic}, in which
+     * case the template must declare the types of the bindings it uses; see BindingDeclarationCollector.
+     */
+    public GroovyAstToScriptTransformer(Collection<String> importStatements, CharSequence text, boolean compileStatic) {
         this.importStatements = importStatements;
         this.text = text;
+        this.compileStatic = compileStatic;
     }
 
     public String getResult() {
@@ -62,27 +74,38 @@ public final class GroovyAstToScriptTransformer extends AbstractAstVisitor {
         importBlocks.forEach(importBlock -> {
             final var body = AstUtil.getFirstChildLeafWithType(importBlock, TokenType.IMPORT_BLOCK_BODY);
             if (body != null) {
-                this.writeLeafNodeLine(body);
+                this.bindingDeclarations.appendImportBlockBody(this.b, this.text, body.getTokenStart(), body.getTokenEnd());
             }
         });
-        this.writeLine("def getTemplateClosure() {");
-        this.indentIndex++;
-        this.writeLine("return { Writer out ->", true);
+        final int declarationsIndex = this.b.length();
+        if (this.compileStatic) {
+            this.writeLine("@groovy.transform.CompileStatic");
+        }
+        this.writeLine("void renderTemplate(Writer out) {");
         this.indentIndex++;
+        this.bindingDeclarations.appendDeclarations(this.b, "    ".repeat(this.indentIndex));
         super.visitGString(node);
-        this.indentIndex--;
-        this.writeLine("}", true);
+        this.writePendingStaticText();
         this.indentIndex--;
         if (this.indentIndex != 0) {
             throw new IllegalStateException("this.indentIndex is " + this.indentIndex);
         }
         this.writeLine("}");
+        // known only now, but declared before renderTemplate()
+        final var declarations = new StringBuilder();
+        this.staticText.appendDeclarations(declarations);
+        this.b.insert(declarationsIndex, declarations);
+    }
+
+    private void writePendingStaticText() {
+        this.staticText.appendPendingWrite(this.b, "    ".repeat(this.indentIndex));
     }
 
     @Override
     public void visitBlockScriptlet(TreeNode node) {
         final var body = AstUtil.getFirstChildLeafWithType(node, TokenType.SCRIPTLET_BODY);
         if (body != null) {
+            this.writePendingStaticText();
             this.writeLeafNodeLine(body);
         }
     }
@@ -91,6 +114,7 @@ public final class GroovyAstToScriptTransformer extends AbstractAstVisitor {
     public void visitExpressionScriptlet(TreeNode node) {
         final var body = AstUtil.getFirstChildLeafWithType(node, TokenType.SCRIPTLET_BODY);
         if (body != null) {
+            this.writePendingStaticText();
             this.writeLine("out << {", true);
             this.indentIndex++;
             this.writeLeafNode(body);
@@ -104,6 +128,7 @@ public final class GroovyAstToScriptTransformer extends AbstractAstVisitor {
     public void visitDollarScriptlet(TreeNode node) {
         final var body = AstUtil.getFirstChildLeafWithType(node, TokenType.DOLLAR_SCRIPTLET_BODY);
         if (body != null) {
+            this.writePendingStaticText();
             this.writeLine("out << {", true);
             this.indentIndex++;
             this.writeLeafNode(body);
@@ -113,15 +138,18 @@ public final class GroovyAstToScriptTransformer extends AbstractAstVisitor {
         }
     }
 
+    /**
+     * Static text is collected in one backing String, so that the template can encode it once up
+     * front; see GroovyTemplate.makeUtf8().
+     */
     @Override
     public void visitText(LeafNode node) {
-        this.write("out << \"\"\"", true);
-        this.writeLeafNode(node);
-        this.writeLine("\"\"\"");
+        this.staticText.append(this.text, node.getTokenStart(), node.getTokenEnd());
     }
 
     @Override
     public void visitDollarReferenceBody(LeafNode node) {
+        this.writePendingStaticText();
         this.write("out << ", true);
         this.writeLeafNode(node);
         this.b.append("\n");
@@ -0,0 +1,136 @@
+package com.jessebrault.gst.groovy;
+
+import com.jessebrault.gst.ast.TreeNodeType;
+import com.jessebrault.gst.parser.ParserAccumulator;
+import com.jessebrault.gst.tokenizer.TokenType;
+import com.jessebrault.gst.util.Diagnostic;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+
+/**
+ * Writes the same script text as the GroovyAstToScriptTransformer directly from the parser events,
+ * without building an AST. Import block bodies go to a separate header region so that they are
+ * still hoisted above the render method, and binding declarations to the start of the render method.
+ *
+ * If the parser reports any diagnostics, the result should not be used; see hasDiagnostics().
+ */
+public final class GroovyScriptParserAccumulator implements ParserAccumulator {
+
+    private static final String methodIndent = "    ";
+
+    private final CharSequence text;
+    private final boolean compileStatic;
+
+    private final StringBuilder header = new StringBuilder();
+    private final StaticTextCollector staticText = new StaticTextCollector();
+    private final BindingDeclarationCollector bindingDeclarations = new BindingDeclarationCollector();
+    private final StringBuilder body = new StringBuilder();
+    private final Deque<TreeNodeType> parents = new ArrayDeque<>();
+
+    private boolean hasDiagnostics;
+    private boolean done;
+    private boolean isGString;
+
+    public GroovyScriptParserAccumulator(Collection<String> importStatements, CharSequence text) {
+        this(importStatements, text, false);
+    }
+
+    /**
+     * @param compileStatic see GroovyAstToScriptTransformer.
+     */
+    public GroovyScriptParserAccumulator(Collection<String> importStatements, CharSequence text, boolean compileStatic) {
+        this.text = text;
+        this.compileStatic = compileStatic;
+        this.header.append("package com.jessebrault.gst.tmp\n");
+        this.header.append("\n"); // extra line
+        importStatements.forEach(importStatement -> this.header.append(importStatement).append("\n"));
+    }
+
+    @Override
+    public void start(TreeNodeType type) {
+        if (this.parents.isEmpty()) {
+            this.isGString = type == TreeNodeType.G_STRING;
+        }
+        this.parents.push(type);
+    }
+
+    @Override
+    public void leaf(TokenType type, int start, int end, Collection<Diagnostic> diagnostics) {
+        if (!diagnostics.isEmpty()) {
+            this.hasDiagnostics = true;
+        }
+        switch (type) {
+            case TEXT -> this.staticText.append(this.text, start, end);
+            case DOLLAR_REFERENCE_BODY -> {
+                this.staticText.appendPendingWrite(this.body, methodIndent);
+                this.body.append(methodIndent).append("out << ")
+                        .append(this.text, start, end)
+                        .append("\n");
+            }
+            case SCRIPTLET_BODY -> {
+                if (this.parents.peek() == TreeNodeType.EXPRESSION_SCRIPTLET) {
+                    this.appendExpression(start, end);
+                } else if (this.parents.peek() == TreeNodeType.BLOCK_SCRIPTLET) {
+                    this.staticText.appendPendingWrite(this.body, methodIndent);
+                    this.body.append(this.text, start, end).append("\n");
+                }
+            }
+            case DOLLAR_SCRIPTLET_BODY -> {
+                if (this.parents.peek() == TreeNodeType.DOLLAR_SCRIPTLET) {
+                    this.appendExpression(start, end);
+                }
+            }
+            case IMPORT_BLOCK_BODY -> this.bindingDeclarations.appendImportBlockBody(this.header, this.text, start, end);
+            default -> {}
+        }
+    }
+
+    private void appendExpression(int start, int end) {
+        this.staticText.appendPendingWrite(this.body, methodIndent);
+        this.body.append(methodIndent).append("out << {\n");
+        this.body.append(this.text, start, end).append("\n");
+        this.body.append(methodIndent).append("}()\n");
+    }
+
+    @Override
+    public void done(Collection<Diagnostic> diagnostics) {
+        if (!diagnostics.isEmpty()) {
+            this.hasDiagnostics = true;
+        }
+        this.parents.pop();
+        if (this.parents.isEmpty()) {
+            this.staticText.appendPendingWrite(this.body, methodIndent);
+            this.body.append("}\n");
+            this.done = true;
+        }
+    }
+
+    /**
+     * @return true if the parser reported any diagnostics, or if the root was not a G_STRING.
+     */
+    public boolean hasDiagnostics() {
+        return this.hasDiagnostics || !this.isGString;
+    }
+
+    public String getResult() {
+        if (!this.done) {
+            throw new IllegalStateException("not done accumulating script yet");
+        }
+        final var b = new StringBuilder(this.header.length() + this.body.length() + 512).append(this.header);
+        this.staticText.appendDeclarations(b);
+        if (this.compileStatic) {
+            b.append("@groovy.transform.CompileStatic\n");
+        }
+        b.append("void renderTemplate(Writer out) {\n");
+        this.bindingDeclarations.appendDeclarations(b, methodIndent);
+        return b.append(this.body).toString();
+    }
+
+    @Override
+    public String toString() {
+        return "GroovyScriptParserAccumulator(parents: " + this.parents + ", done: " + this.done + ")";
+    }
+
+}
@@ -1,30 +1,138 @@
 package com.jessebrault.gst.groovy;
 
 import com.jessebrault.gst.Template;
-import groovy.lang.Closure;
-import groovy.lang.GroovyObject;
+import groovy.lang.Binding;
+import groovy.lang.GroovyClassLoader;
+import org.codehaus.groovy.runtime.InvokerHelper;
+import org.jetbrains.annotations.Nullable;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.io.StringWriter;
+import java.io.UncheckedIOException;
 import java.io.Writer;
+import java.lang.reflect.Constructor;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
 import java.util.Map;
 
-public final class GroovyTemplate implements Template {
+/**
+ * Renders by calling renderTemplate() on a new instance of the script class, so that renders share
+ * no state and may run concurrently.
+ */
+public final class GroovyTemplate implements Template, AutoCloseable {
 
-    private final GroovyObject scriptObject;
-    private final Closure<?> closure;
+    private final Class<? extends GroovyTemplateScript> scriptClass;
+    private final Constructor<? extends GroovyTemplateScript> scriptConstructor;
+    private final @Nullable GroovyClassLoader classLoader;
 
-    public GroovyTemplate(GroovyObject scriptObject, Closure<?> closure) {
-        this.scriptObject = scriptObject;
-        this.closure = closure;
+    private volatile Utf8Writer.@Nullable StaticText encodedStaticText;
+
+    public GroovyTemplate(Class<? extends GroovyTemplateScript> scriptClass) throws NoSuchMethodException {
+        this(scriptClass, null);
+    }
+
+    /**
+     * @param classLoader the loader which loaded only this template's classes, if any; see close().
+     */
+    public GroovyTemplate(
+            Class<? extends GroovyTemplateScript> scriptClass,
+            @Nullable GroovyClassLoader classLoader
+    ) throws NoSuchMethodException {
+        this.scriptClass = scriptClass;
+        this.scriptConstructor = scriptClass.getDeclaredConstructor(Binding.class);
+        this.classLoader = classLoader;
+    }
+
+    private GroovyTemplateScript newScript(Binding binding) {
+        try {
+            return this.scriptConstructor.newInstance(binding);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Unable to instantiate " + this.scriptClass.getName(), e);
+        }
     }
 
     @Override
     public String make(Map<String, ?> binding) {
-        final Closure<?> rehydrated = this.closure.rehydrate(binding, this.scriptObject, this.scriptObject);
-        rehydrated.setResolveStrategy(Closure.DELEGATE_ONLY);
         final Writer w = new StringWriter();
-        rehydrated.call(w);
+        try {
+            this.render(binding, w);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
         return w.toString();
     }
 
+    /**
+     * Writes straight into out, without an intermediate String. Writers are used as they are, so
+     * buffering and flushing are up to the caller.
+     */
+    @Override
+    public void make(Map<String, ?> binding, Appendable out) throws IOException {
+        this.render(binding, out instanceof Writer writer ? writer : new AppendableWriter(out));
+    }
+
+    /**
+     * The static text of the template, from the script's getStaticText(), UTF-8 encoded once on first
+     * use.
+     */
+    private Utf8Writer.StaticText getEncodedStaticText() {
+        Utf8Writer.StaticText encoded = this.encodedStaticText;
+        if (encoded == null) {
+            final GroovyTemplateScript script = this.newScript(new Binding());
+            encoded = Utf8Writer.StaticText.encode(script.getStaticText(), script.getStaticTextOffsets());
+            this.encodedStaticText = encoded;
+        }
+        return encoded;
+    }
+
+    private void renderUtf8(Map<String, ?> binding, Utf8Writer.ByteSink sink) throws IOException {
+        final var writer = new Utf8Writer(this.getEncodedStaticText(), sink);
+        this.render(binding, writer);
+        writer.finish();
+    }
+
+    @Override
+    public void makeUtf8(Map<String, ?> binding, OutputStream out) throws IOException {
+        this.renderUtf8(binding, out::write);
+    }
+
+    @Override
+    public void makeUtf8(Map<String, ?> binding, WritableByteChannel out) throws IOException {
+        this.renderUtf8(binding, (b, off, len) -> {
+            final ByteBuffer bytes = ByteBuffer.wrap(b, off, len);
+            while (bytes.hasRemaining()) {
+                out.write(bytes);
+            }
+        });
+    }
+
+    @Override
+    public void makeUtf8(Map<String, ?> binding, ByteBuffer out) {
+        try {
+            this.renderUtf8(binding, out::put);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // a ByteBuffer never throws one
+        }
+    }
+
+    private void render(Map<String, ?> binding, Writer out) throws IOException {
+        this.newScript(new Binding(binding)).renderTemplate(out);
+    }
+
+    /**
+     * Removes the Groovy metaclasses of this template's classes, which would otherwise keep the
+     * classes and their loader from ever being unloaded. The template still works afterwards, but
+     * should no longer be used.
+     */
+    @Override
+    public void close() {
+        if (this.classLoader != null) {
+            for (final Class<?> loadedClass : this.classLoader.getLoadedClasses()) {
+                InvokerHelper.removeClass(loadedClass);
+            }
+            InvokerHelper.removeClass(this.scriptClass);
+        }
+    }
+
 }
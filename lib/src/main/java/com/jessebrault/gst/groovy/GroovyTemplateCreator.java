@@ -7,42 +7,81 @@ import com.jessebrault.gst.ast.AstUtil;
 import com.jessebrault.gst.ast.TreeNode;
 import com.jessebrault.gst.ast.TreeNodeType;
 import com.jessebrault.gst.parser.Parser;
+import com.jessebrault.gst.parser.ParserAccumulator;
 import com.jessebrault.gst.parser.TreeNodeParserAccumulator;
 import com.jessebrault.gst.tokenizer.FsmBasedTokenizer;
 import com.jessebrault.gst.tokenizer.TokenProvider;
+import com.jessebrault.gst.tokenizer.Tokenizer;
 import com.jessebrault.gst.tokenizer.TokenizerBasedTokenProvider;
 import com.jessebrault.gst.tokenizer.TokenizerState;
 import com.jessebrault.gst.util.Diagnostic;
 import com.jessebrault.gst.util.Result;
 import com.jessebrault.gst.util.SimpleDiagnostic;
-import groovy.lang.Closure;
 import groovy.lang.GroovyClassLoader;
-import groovy.lang.GroovyObject;
+import org.codehaus.groovy.control.CompilationFailedException;
+import org.codehaus.groovy.control.CompilationUnit;
+import org.codehaus.groovy.control.Phases;
+import org.codehaus.groovy.control.messages.Message;
+import org.codehaus.groovy.control.messages.SyntaxErrorMessage;
+import org.codehaus.groovy.tools.GroovyClass;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.File;
-import java.io.FileWriter;
-import java.io.IOException;
-import java.io.Writer;
-import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Supplier;
-import java.util.stream.Stream;
 
 /**
- * May be extended.
+ * May be extended. The StandardGstParser and ExtendedGstParser are stateless, so the parserSupplier
+ * may return one shared instance, e.g. {@code () -> parser}.
+ *
+ * If given a cacheDirectory, the compiled classes of each template are stored there, keyed by the
+ * input, the custom import statements, the creator, parser and tokenizer types, compileStatic and the
+ * Groovy and gst versions. Later creators using the same directory, e.g. after a restart, then define
+ * the classes straight from the cache without tokenizing, parsing or compiling.
+ *
+ * Templates made only of text and dollar references, e.g. {@code Hello, $user.name!}, are compiled
+ * straight to bytecode by the GroovyAstToBytecodeTransformer instead, which takes well under a
+ * millisecond; see isDirectBytecodeEnabled().
+ *
+ * If compileStatic, the render methods are compiled with @CompileStatic, which avoids dynamic
+ * dispatch when rendering. A template must then declare the bindings it uses with their types, e.g.
+ * {@code <%@ binding String name; List<Integer> numbers %>}, which needs the ExtendedGstParser; see
+ * BindingDeclarationCollector. A template using anything the static type checker cannot resolve does
+ * not compile, and its Result has the diagnostics.
+ *
+ * Streaming and direct bytecode skip some of the protected hooks: streaming skips tokenizeAndParse()
+ * and transformToScript(), and direct bytecode skips transformToScript(), createScript() and
+ * createTemplate(s)(). A subclass overriding any of these hooks must also override
+ * isStreamingEnabled() and isDirectBytecodeEnabled() to return false, or its override is not called
+ * for every template.
  */
 public class GroovyTemplateCreator implements TemplateCreator {
 
     private static final Logger logger = LoggerFactory.getLogger(GroovyTemplateCreator.class);
 
     private final Supplier<Parser> parserSupplier;
-    private final GroovyClassLoader groovyClassLoader;
-    private final File packageDirectory;
+    private final Supplier<Tokenizer> tokenizerSupplier;
+    private final ClassLoader parentClassLoader;
     private final boolean debug;
+    private final @Nullable BytecodeCache bytecodeCache;
+    private final boolean compileStatic;
+    // part of the cache keys
+    private final Class<?> parserClass;
+    private final Class<?> tokenizerClass;
 
     private final AtomicInteger scriptNumber = new AtomicInteger();
 
@@ -50,33 +89,85 @@ public class GroovyTemplateCreator implements TemplateCreator {
             Supplier<Parser> parserSupplier,
             ClassLoader parentClassLoader,
             boolean debug
-    ) throws IOException {
+    ) {
+        this(parserSupplier, FsmBasedTokenizer::new, parentClassLoader, debug);
+    }
+
+    public GroovyTemplateCreator(
+            Supplier<Parser> parserSupplier,
+            Supplier<Tokenizer> tokenizerSupplier,
+            ClassLoader parentClassLoader,
+            boolean debug
+    ) {
+        this(parserSupplier, tokenizerSupplier, parentClassLoader, debug, null);
+    }
+
+    public GroovyTemplateCreator(
+            Supplier<Parser> parserSupplier,
+            Supplier<Tokenizer> tokenizerSupplier,
+            ClassLoader parentClassLoader,
+            boolean debug,
+            @Nullable Path cacheDirectory
+    ) {
+        this(parserSupplier, tokenizerSupplier, parentClassLoader, debug, cacheDirectory, false);
+    }
+
+    public GroovyTemplateCreator(
+            Supplier<Parser> parserSupplier,
+            Supplier<Tokenizer> tokenizerSupplier,
+            ClassLoader parentClassLoader,
+            boolean debug,
+            @Nullable Path cacheDirectory,
+            boolean compileStatic
+    ) {
         this.parserSupplier = parserSupplier;
-        this.groovyClassLoader = new GroovyClassLoader(parentClassLoader);
-        final var templateDirectoryPath = Files.createTempDirectory("groovyTemplateCreator");
-        this.groovyClassLoader.addURL(templateDirectoryPath.toUri().toURL());
-        final String packagePath = Stream.of("com", "jessebrault", "gst", "tmp")
-                .reduce("", (acc, part) -> acc + File.separator + part);
-        this.packageDirectory = new File(templateDirectoryPath.toFile(), packagePath);
-        if (!this.packageDirectory.mkdirs()) {
-            throw new IOException(
-                    "Unable to create parent directories for the packageDirectory: " + this.packageDirectory
-            );
-        }
+        this.tokenizerSupplier = tokenizerSupplier;
+        this.parentClassLoader = parentClassLoader;
         this.debug = debug;
+        this.bytecodeCache = cacheDirectory != null && BytecodeCache.isAvailable()
+                ? new BytecodeCache(cacheDirectory)
+                : null;
+        this.compileStatic = compileStatic;
+        this.parserClass = parserSupplier.get().getClass();
+        this.tokenizerClass = tokenizerSupplier.get().getClass();
     }
 
-    protected TreeNode tokenizeAndParse(CharSequence input) {
+    private void parse(CharSequence input, ParserAccumulator acc) {
         final TokenProvider tokenProvider = new TokenizerBasedTokenProvider(
-                FsmBasedTokenizer::new,
+                this.tokenizerSupplier,
                 input,
                 0,
                 input.length(),
                 TokenizerState.TEXT
         );
-        final TreeNodeParserAccumulator acc = new TreeNodeParserAccumulator();
         final Parser parser = this.parserSupplier.get();
         parser.parse(tokenProvider, acc);
+    }
+
+    /**
+     * When true, create() writes the script straight from the parser events and only builds an AST
+     * if the parser reports diagnostics. By default, streaming is disabled in debug mode so that the
+     * AST can be logged. Override this to return false if tokenizeAndParse() or transformToScript()
+     * are overridden, as streaming calls neither.
+     */
+    protected boolean isStreamingEnabled() {
+        return !this.debug;
+    }
+
+    /**
+     * When true, templates made only of text and dollar references are compiled straight to bytecode,
+     * without a script. By default, this is disabled in debug mode so that the script can be logged,
+     * and if compileStatic, so that the references are type checked. Override this to return false
+     * if transformToScript(), createScript(), createTemplate() or createTemplates() are overridden, as
+     * direct bytecode calls none of them.
+     */
+    protected boolean isDirectBytecodeEnabled() {
+        return !this.debug && !this.compileStatic;
+    }
+
+    protected TreeNode tokenizeAndParse(CharSequence input) {
+        final TreeNodeParserAccumulator acc = new TreeNodeParserAccumulator();
+        this.parse(input, acc);
         final TreeNode root = acc.getResult();
         if (this.debug) {
             final var prettyPrinter = new AstPrettyPrinterVisitor();
@@ -91,7 +182,7 @@ public class GroovyTemplateCreator implements TemplateCreator {
             Collection<String> customImportStatements,
             TreeNode root
     ) {
-        final var transformer = new GroovyAstToScriptTransformer(customImportStatements, input);
+        final var transformer = new GroovyAstToScriptTransformer(customImportStatements, input, this.compileStatic);
         transformer.visitGString(root);
         final String scriptText = transformer.getResult();
         if (this.debug) {
@@ -100,35 +191,246 @@ public class GroovyTemplateCreator implements TemplateCreator {
         return scriptText;
     }
 
+    private String nextScriptName() {
+        return "groovyTemplateScript" + this.scriptNumber.getAndIncrement();
+    }
+
+    private static Result<Template> getTemplate(Class<?> scriptClass, GroovyClassLoader groovyClassLoader)
+            throws ReflectiveOperationException {
+        return Result.of(new GroovyTemplate(scriptClass.asSubclass(GroovyTemplateScript.class), groovyClassLoader));
+    }
+
+    /**
+     * Defines the classes of one template in a loader of its own, so that a template's classes can be
+     * unloaded once the template is closed and no longer referenced, e.g. after it is evicted from a
+     * CachingTemplateCreator.
+     */
+    private Result<Template> defineTemplate(CompiledTemplate compiledTemplate) {
+        try {
+            final var templateClassLoader = new TemplateClassLoader(this.parentClassLoader);
+            templateClassLoader.defineResources(compiledTemplate.getResources());
+            templateClassLoader.defineClasses(compiledTemplate.getClasses());
+            for (final GroovyClass groovyClass : compiledTemplate.getClasses()) {
+                if (getSimpleName(groovyClass.getName()).equals(compiledTemplate.getScriptName())) {
+                    return getTemplate(templateClassLoader.loadClass(groovyClass.getName()), templateClassLoader);
+                }
+            }
+            throw new IllegalArgumentException("There is no script class among the classes");
+        } catch (Exception | LinkageError e) {
+            return getExceptionResult(e instanceof Exception exception ? exception : new IllegalStateException(e));
+        }
+    }
+
+    // e.g. groovyTemplateScript0.gsttext for com/jessebrault/gst/tmp/groovyTemplateScript0.gsttext
+    private static String getSimpleName(String name) {
+        return name.substring(Math.max(name.lastIndexOf('.'), name.lastIndexOf('/')) + 1);
+    }
+
+    // e.g. groovyTemplateScript0 for com.jessebrault.gst.tmp.groovyTemplateScript0$_renderTemplate_closure1
+    private static String getScriptName(String name) {
+        final var simpleName = getSimpleName(name);
+        final int end = simpleName.indexOf('$');
+        return end == -1 ? simpleName : simpleName.substring(0, end);
+    }
+
+    private static Result<Template> getExceptionResult(Exception e) {
+        final Diagnostic diagnostic = new SimpleDiagnostic(
+                "An exception occurred while creating the template: " + e.getMessage(),
+                e
+        );
+        return Result.ofDiagnostics(List.of(diagnostic));
+    }
+
+    /**
+     * @return the template compiled straight to bytecode, or null if it has anything but text and
+     * dollar references, or does not parse, and so needs a script. Custom imports, e.g. of a class as
+     * a lowercase alias, could change what a reference resolves to, so templates with any need one.
+     */
+    private @Nullable Result<Template> createDirectTemplate(
+            CharSequence input,
+            Collection<String> customImportStatements
+    ) {
+        if (!this.isDirectBytecodeEnabled() || !customImportStatements.isEmpty()) {
+            return null;
+        }
+        final var inputString = input.toString();
+        // a cheap check before parsing: no scriptlets of any kind
+        if (inputString.contains("<%") || inputString.contains("${")) {
+            return null;
+        }
+        final TreeNode root = this.tokenizeAndParse(input);
+        if (root.getType() != TreeNodeType.G_STRING || AstUtil.hasDiagnostics(root)) {
+            return null;
+        }
+        final var transformer = new GroovyAstToBytecodeTransformer(input);
+        transformer.visitGString(root);
+        if (!transformer.isSupported()) {
+            return null;
+        }
+        try {
+            return Result.of(new BytecodeTemplate(transformer));
+        } catch (Exception | LinkageError e) {
+            return getExceptionResult(e instanceof Exception exception ? exception : new IllegalStateException(e));
+        }
+    }
+
+    private CompiledTemplate compileTemplate(String scriptText) {
+        final var scriptName = this.nextScriptName();
+        final CompilationUnit unit = CompilationUtil.newCompilationUnit(this.parentClassLoader);
+        // compiled in memory; the source name only determines the class name
+        unit.addSource(scriptName + ".groovy", scriptText);
+        unit.compile(Phases.CLASS_GENERATION);
+        // with any other classes the unit compiled, e.g. imported .groovy sources found by the parent loader
+        return new CompiledTemplate(scriptName, unit.getClasses(), CompilationUtil.getResources(unit));
+    }
+
     protected Result<Template> createTemplate(String scriptText) {
-        final var scriptName = "groovyTemplateScript" + this.scriptNumber.getAndIncrement();
-        final var scriptFile = new File(this.packageDirectory, scriptName + ".groovy");
-        try (final Writer scriptFileWriter = new FileWriter(scriptFile)) {
-            scriptFileWriter.write(scriptText);
-            scriptFileWriter.close();
-            final Class<?> scriptClass = this.groovyClassLoader.loadClass(
-                    "com.jessebrault.gst.tmp." + scriptName
-            );
-            final var scriptObject = (GroovyObject) scriptClass.getDeclaredConstructor().newInstance();
-            final var closure = (Closure<?>) scriptObject.invokeMethod("getTemplateClosure", null);
-            return Result.of(new GroovyTemplate(scriptObject, closure));
+        try {
+            return this.defineTemplate(this.compileTemplate(scriptText));
         } catch (Exception e) {
-            final Diagnostic diagnostic = new SimpleDiagnostic(
-                    "An exception occurred while creating the template: " + e.getMessage(),
-                    e
-            );
-            return Result.ofDiagnostics(List.of(diagnostic));
+            return getExceptionResult(e);
         }
     }
 
-    @Override
-    public Result<Template> create(CharSequence input, Collection<String> customImportStatements) {
+    /**
+     * Compiles the script on its own, as createTemplate() does, and stores its classes in the
+     * bytecodeCache under the cacheKey, if any.
+     */
+    private Result<Template> createTemplate(String scriptText, @Nullable String cacheKey) {
+        if (cacheKey == null || this.bytecodeCache == null) {
+            return this.createTemplate(scriptText);
+        }
+        try {
+            final CompiledTemplate compiledTemplate = this.compileTemplate(scriptText);
+            final Result<Template> result = this.defineTemplate(compiledTemplate);
+            if (!result.hasDiagnostics()) {
+                this.bytecodeCache.write(cacheKey, compiledTemplate);
+            }
+            return result;
+        } catch (Exception e) {
+            return getExceptionResult(e);
+        }
+    }
+
+    /**
+     * Compiles all the scripts in one CompilationUnit, then defines each script's classes in a loader
+     * of its own, as createTemplate() does. Scripts the unit reports errors for are removed and
+     * created one by one with createTemplate(), so that each gets its own diagnostics.
+     *
+     * @return the Templates, in the same order as the scripts.
+     */
+    protected List<Result<Template>> createTemplates(List<String> scriptTexts) {
+        return this.createTemplates(scriptTexts, null);
+    }
+
+    /**
+     * @param cacheKeys the keys under which to store each script's classes in the bytecodeCache, if any.
+     */
+    private List<Result<Template>> createTemplates(List<String> scriptTexts, @Nullable List<String> cacheKeys) {
+        final List<Result<Template>> results = new ArrayList<>(Collections.nCopies(scriptTexts.size(), null));
+        final Map<String, Integer> pending = new LinkedHashMap<>();
+        for (int i = 0; i < scriptTexts.size(); i++) {
+            final var scriptName = this.nextScriptName();
+            pending.put(scriptName, i);
+        }
+        while (!pending.isEmpty()) {
+            final CompilationUnit unit = CompilationUtil.newCompilationUnit(this.parentClassLoader);
+            for (final var entry : pending.entrySet()) {
+                unit.addSource(entry.getKey() + ".groovy", scriptTexts.get(entry.getValue()));
+            }
+            try {
+                unit.compile(Phases.CLASS_GENERATION);
+            } catch (CompilationFailedException e) {
+                final Set<String> failed = getFailedScriptNames(unit, pending.keySet());
+                if (failed.isEmpty()) {
+                    // the errors cannot be attributed, so every script is on its own
+                    failed.addAll(pending.keySet());
+                }
+                for (final String scriptName : failed) {
+                    final int index = pending.remove(scriptName);
+                    results.set(index, this.createTemplate(scriptTexts.get(index), getCacheKey(cacheKeys, index)));
+                }
+                continue;
+            }
+
+            final Map<String, List<GroovyClass>> classesByScriptName = new HashMap<>();
+            for (final GroovyClass groovyClass : unit.getClasses()) {
+                classesByScriptName.computeIfAbsent(getScriptName(groovyClass.getName()), ignored -> new ArrayList<>())
+                        .add(groovyClass);
+            }
+            final Map<String, Map<String, byte[]>> resourcesByScriptName = new HashMap<>();
+            for (final var resource : CompilationUtil.getResources(unit).entrySet()) {
+                final var simpleName = getSimpleName(resource.getKey());
+                resourcesByScriptName.computeIfAbsent(
+                        simpleName.substring(0, simpleName.length() - StaticTextExternalizer.resourceSuffix.length()),
+                        ignored -> new HashMap<>()
+                ).put(resource.getKey(), resource.getValue());
+            }
+            if (!pending.keySet().containsAll(classesByScriptName.keySet())) {
+                // The unit also compiled other classes, e.g. imported .groovy sources found by the parent
+                // loader, which a single template's loader would then be missing.
+                for (final int index : pending.values()) {
+                    results.set(index, this.createTemplate(scriptTexts.get(index), getCacheKey(cacheKeys, index)));
+                }
+                break;
+            }
+            for (final var entry : pending.entrySet()) {
+                final var compiledTemplate = new CompiledTemplate(
+                        entry.getKey(),
+                        classesByScriptName.getOrDefault(entry.getKey(), List.of()),
+                        resourcesByScriptName.getOrDefault(entry.getKey(), Map.of())
+                );
+                final Result<Template> result = this.defineTemplate(compiledTemplate);
+                if (cacheKeys != null && this.bytecodeCache != null && !result.hasDiagnostics()) {
+                    this.bytecodeCache.write(cacheKeys.get(entry.getValue()), compiledTemplate);
+                }
+                results.set(entry.getValue(), result);
+            }
+            break;
+        }
+        return results;
+    }
+
+    private static @Nullable String getCacheKey(@Nullable List<String> cacheKeys, int index) {
+        return cacheKeys != null ? cacheKeys.get(index) : null;
+    }
+
+    private static Set<String> getFailedScriptNames(CompilationUnit unit, Set<String> scriptNames) {
+        final Set<String> failed = new HashSet<>();
+        for (final Message message : unit.getErrorCollector().getErrors()) {
+            if (message instanceof SyntaxErrorMessage syntaxErrorMessage) {
+                final var sourceLocator = syntaxErrorMessage.getCause().getSourceLocator();
+                if (sourceLocator != null && sourceLocator.endsWith(".groovy")) {
+                    final var scriptName = sourceLocator.substring(0, sourceLocator.length() - ".groovy".length());
+                    if (scriptNames.contains(scriptName)) {
+                        failed.add(scriptName);
+                        continue;
+                    }
+                }
+            }
+            // an error we cannot attribute to one script
+            return new HashSet<>();
+        }
+        return failed;
+    }
+
+    /**
+     * @return the script for the input, or the diagnostics if it does not parse.
+     */
+    protected Result<String> createScript(CharSequence input, Collection<String> customImportStatements) {
+        if (this.isStreamingEnabled()) {
+            final var acc = new GroovyScriptParserAccumulator(customImportStatements, input, this.compileStatic);
+            this.parse(input, acc);
+            if (!acc.hasDiagnostics()) {
+                return Result.of(acc.getResult());
+            }
+            // fall through and build the AST to collect the diagnostics
+        }
         final TreeNode root = this.tokenizeAndParse(input);
         final Collection<Diagnostic> rootDiagnostics = AstUtil.getAllDiagnostics(root);
         if (rootDiagnostics.isEmpty()) {
             if (root.getType() == TreeNodeType.G_STRING) {
-                final var scriptText = transformToScript(input, customImportStatements, root);
-                return this.createTemplate(scriptText);
+                return Result.of(transformToScript(input, customImportStatements, root));
             } else {
                 final Diagnostic diagnostic = new SimpleDiagnostic("input did not parse to a G_STRING");
                 return Result.ofDiagnostics(List.of(diagnostic));
@@ -138,4 +440,121 @@ public class GroovyTemplateCreator implements TemplateCreator {
         }
     }
 
+    private static final class Prepared {
+
+        private final @Nullable String cacheKey;
+        // from the bytecodeCache or compiled straight to bytecode, so needs no script
+        private final @Nullable Result<Template> template;
+        private final @Nullable Result<String> scriptResult;
+
+        private Prepared(
+                @Nullable String cacheKey,
+                @Nullable Result<Template> template,
+                @Nullable Result<String> scriptResult
+        ) {
+            this.cacheKey = cacheKey;
+            this.template = template;
+            this.scriptResult = scriptResult;
+        }
+
+    }
+
+    /**
+     * Compiles the input straight to bytecode if it can, or looks it up in the bytecodeCache, if any,
+     * and otherwise creates its script.
+     */
+    private Prepared prepare(CharSequence input, Collection<String> customImportStatements) {
+        final Result<Template> directTemplate = this.createDirectTemplate(input, customImportStatements);
+        if (directTemplate != null) {
+            return new Prepared(null, directTemplate, null);
+        }
+        if (this.bytecodeCache == null) {
+            return new Prepared(null, null, this.createScript(input, customImportStatements));
+        }
+        final var cacheKey = this.bytecodeCache.getKey(
+                input,
+                customImportStatements,
+                this.getClass(),
+                this.parserClass,
+                this.tokenizerClass,
+                this.compileStatic
+        );
+        final CompiledTemplate compiledTemplate = this.bytecodeCache.read(cacheKey);
+        if (compiledTemplate != null) {
+            final Result<Template> cachedTemplate = this.defineTemplate(compiledTemplate);
+            if (!cachedTemplate.hasDiagnostics()) {
+                return new Prepared(cacheKey, cachedTemplate, null);
+            }
+            logger.warn("Unable to define cached template classes for key {}; compiling again", cacheKey);
+        }
+        return new Prepared(cacheKey, null, this.createScript(input, customImportStatements));
+    }
+
+    @Override
+    public Result<Template> create(CharSequence input, Collection<String> customImportStatements) {
+        final Prepared prepared = this.prepare(input, customImportStatements);
+        if (prepared.template != null) {
+            return prepared.template;
+        }
+        final Result<String> scriptResult = Objects.requireNonNull(prepared.scriptResult);
+        if (scriptResult.hasDiagnostics()) {
+            return Result.ofDiagnostics(scriptResult.getDiagnostics());
+        } else if (prepared.cacheKey != null) {
+            return this.createTemplates(List.of(scriptResult.get()), List.of(prepared.cacheKey)).get(0);
+        } else {
+            return this.createTemplate(scriptResult.get());
+        }
+    }
+
+    /**
+     * Tokenizes, parses and transforms the inputs in parallel on the executor, then compiles all the
+     * scripts at once with createTemplates(), so that the fixed costs of a compilation are only paid
+     * once. Inputs found in the bytecodeCache, if any, are not compiled at all.
+     */
+    @Override
+    public CompletableFuture<List<Result<Template>>> createAll(
+            List<? extends CharSequence> inputs,
+            Collection<String> customImportStatements,
+            Executor executor
+    ) {
+        final List<CompletableFuture<Prepared>> preparedFutures = new ArrayList<>(inputs.size());
+        for (final CharSequence input : inputs) {
+            preparedFutures.add(CompletableFuture.supplyAsync(
+                    () -> this.prepare(input, customImportStatements),
+                    executor
+            ));
+        }
+        return CompletableFuture.allOf(preparedFutures.toArray(new CompletableFuture<?>[0])).thenApplyAsync(ignored -> {
+            final List<Result<Template>> results = new ArrayList<>(inputs.size());
+            final List<Integer> scriptIndexes = new ArrayList<>();
+            final List<String> scriptTexts = new ArrayList<>();
+            final List<String> cacheKeys = new ArrayList<>();
+            for (int i = 0; i < preparedFutures.size(); i++) {
+                final Prepared prepared = preparedFutures.get(i).join();
+                if (prepared.template != null) {
+                    results.add(prepared.template);
+                    continue;
+                }
+                final Result<String> scriptResult = Objects.requireNonNull(prepared.scriptResult);
+                if (scriptResult.hasDiagnostics()) {
+                    results.add(Result.ofDiagnostics(scriptResult.getDiagnostics()));
+                } else {
+                    results.add(null);
+                    scriptIndexes.add(i);
+                    scriptTexts.add(scriptResult.get());
+                    cacheKeys.add(prepared.cacheKey);
+                }
+            }
+            if (!scriptTexts.isEmpty()) {
+                final List<Result<Template>> templateResults = this.bytecodeCache != null
+                        ? this.createTemplates(scriptTexts, cacheKeys)
+                        : this.createTemplates(scriptTexts);
+                for (int i = 0; i < scriptIndexes.size(); i++) {
+                    results.set(scriptIndexes.get(i), templateResults.get(i));
+                }
+            }
+            return results;
+        }, executor);
+    }
+
 }
@@ -0,0 +1,232 @@
+package com.jessebrault.gst.groovy;
+
+import com.jessebrault.gst.parser.Parser;
+import com.jessebrault.gst.tokenizer.FsmBasedTokenizer;
+import com.jessebrault.gst.tokenizer.Tokenizer;
+import com.jessebrault.gst.util.Diagnostic;
+import com.jessebrault.gst.util.Result;
+import com.jessebrault.gst.util.SimpleDiagnostic;
+import org.codehaus.groovy.control.CompilationFailedException;
+import org.codehaus.groovy.control.CompilationUnit;
+import org.codehaus.groovy.control.Phases;
+import org.codehaus.groovy.control.messages.Message;
+import org.codehaus.groovy.control.messages.SyntaxErrorMessage;
+import org.codehaus.groovy.syntax.SyntaxException;
+import org.codehaus.groovy.tools.GroovyClass;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Compiles templates ahead of time, e.g. at build time, into class files, the resources some of
+ * them load, such as long static text, and an index which PrecompiledTemplates reads at runtime. The index maps each template name to the name of its
+ * script class, and is written to {@link PrecompiledTemplates#indexResourceName}.
+ *
+ * Script classes are named after the classNamePrefix, which should be unique per class path, e.g. the
+ * name of the project, and the template name.
+ */
+public final class GroovyTemplatePrecompiler {
+
+    private static final String scriptPackage = "com.jessebrault.gst.tmp";
+
+    private static String getClassName(String classNamePrefix, int index, String templateName) {
+        final var name = classNamePrefix + "_" + index + "_" + templateName;
+        final var b = new StringBuilder(name.length() + 1);
+        if (!Character.isJavaIdentifierStart(name.charAt(0))) {
+            b.append('_');
+        }
+        for (int i = 0; i < name.length(); i++) {
+            final char c = name.charAt(i);
+            // '$' separates the script from its closures; see GroovyTemplateCreator
+            b.append(Character.isJavaIdentifierPart(c) && c != '$' ? c : '_');
+        }
+        return b.toString();
+    }
+
+    private final GroovyTemplateCreator scriptCreator;
+    private final ClassLoader classLoader;
+    private final String classNamePrefix;
+
+    /**
+     * @param classLoader the loader to resolve the templates' imports with.
+     */
+    public GroovyTemplatePrecompiler(
+            Supplier<Parser> parserSupplier,
+            Supplier<Tokenizer> tokenizerSupplier,
+            ClassLoader classLoader,
+            String classNamePrefix
+    ) {
+        this(parserSupplier, tokenizerSupplier, classLoader, classNamePrefix, false);
+    }
+
+    /**
+     * @param compileStatic see GroovyTemplateCreator.
+     */
+    public GroovyTemplatePrecompiler(
+            Supplier<Parser> parserSupplier,
+            Supplier<Tokenizer> tokenizerSupplier,
+            ClassLoader classLoader,
+            String classNamePrefix,
+            boolean compileStatic
+    ) {
+        this.scriptCreator = new GroovyTemplateCreator(
+                parserSupplier,
+                tokenizerSupplier,
+                classLoader,
+                false,
+                null,
+                compileStatic
+        );
+        this.classLoader = classLoader;
+        this.classNamePrefix = classNamePrefix;
+    }
+
+    /**
+     * @param templates the template texts by name, e.g. their paths relative to a source directory.
+     * @return the index, or the diagnostics of all templates which did not parse or compile, in which
+     * case nothing is written.
+     */
+    public Result<Map<String, String>> precompile(
+            Map<String, ? extends CharSequence> templates,
+            Collection<String> customImportStatements,
+            Path outputDirectory
+    ) throws IOException {
+        final Map<String, String> index = new TreeMap<>();
+        final Map<String, String> templateNamesBySourceName = new HashMap<>();
+        final List<Diagnostic> diagnostics = new ArrayList<>();
+        final CompilationUnit unit = CompilationUtil.newCompilationUnit(this.classLoader);
+        int templateIndex = 0;
+        for (final var entry : new TreeMap<>(templates).entrySet()) {
+            final Result<String> scriptResult = this.scriptCreator.createScript(entry.getValue(), customImportStatements);
+            if (scriptResult.hasDiagnostics()) {
+                for (final Diagnostic diagnostic : scriptResult.getDiagnostics()) {
+                    diagnostics.add(new SimpleDiagnostic(
+                            entry.getKey() + ": " + diagnostic.getMessage(),
+                            diagnostic.getException()
+                    ));
+                }
+            } else {
+                final var className = getClassName(this.classNamePrefix, templateIndex++, entry.getKey());
+                // the source name determines the class name
+                unit.addSource(className + ".groovy", scriptResult.get());
+                templateNamesBySourceName.put(className + ".groovy", entry.getKey());
+                index.put(entry.getKey(), scriptPackage + "." + className);
+            }
+        }
+        if (!diagnostics.isEmpty()) {
+            return Result.ofDiagnostics(diagnostics);
+        }
+
+        try {
+            unit.compile(Phases.CLASS_GENERATION);
+        } catch (CompilationFailedException e) {
+            for (final Message message : unit.getErrorCollector().getErrors()) {
+                if (message instanceof SyntaxErrorMessage syntaxErrorMessage
+                        && templateNamesBySourceName.containsKey(syntaxErrorMessage.getCause().getSourceLocator())) {
+                    final SyntaxException cause = syntaxErrorMessage.getCause();
+                    diagnostics.add(new SimpleDiagnostic(
+                            templateNamesBySourceName.get(cause.getSourceLocator()) + ": " + cause.getMessage(),
+                            cause
+                    ));
+                }
+            }
+            if (diagnostics.isEmpty()) {
+                diagnostics.add(new SimpleDiagnostic(e.getMessage(), e));
+            }
+            return Result.ofDiagnostics(diagnostics);
+        }
+        for (final GroovyClass groovyClass : unit.getClasses()) {
+            final Path classFile = outputDirectory.resolve(groovyClass.getName().replace('.', '/') + ".class");
+            Files.createDirectories(classFile.getParent());
+            Files.write(classFile, groovyClass.getBytes());
+        }
+        for (final var resource : CompilationUtil.getResources(unit).entrySet()) {
+            final Path resourceFile = outputDirectory.resolve(resource.getKey());
+            Files.createDirectories(resourceFile.getParent());
+            Files.write(resourceFile, resource.getValue());
+        }
+        final var properties = new Properties();
+        properties.putAll(index);
+        final var out = new ByteArrayOutputStream();
+        properties.store(out, null);
+        // drop the leading date comment, so that the same templates always give the same output
+        final var stored = out.toString(StandardCharsets.ISO_8859_1);
+        final Path indexFile = outputDirectory.resolve(PrecompiledTemplates.indexResourceName);
+        Files.createDirectories(indexFile.getParent());
+        Files.writeString(indexFile, stored.substring(stored.indexOf('\n') + 1), StandardCharsets.ISO_8859_1);
+        return Result.of(index);
+    }
+
+    /**
+     * Precompiles every file in sourceDirectory, named by its path relative to sourceDirectory with
+     * '/' separators, and exits with status 1 after printing the diagnostics if any template fails.
+     * With --compileStatic, the templates are compiled with @CompileStatic.
+     *
+     * Usage: {@code [--compileStatic] sourceDirectory outputDirectory classNamePrefix parserClassName
+     * [customImportStatement...]}
+     */
+    public static void main(String[] args) throws Exception {
+        final boolean compileStatic = args.length > 0 && args[0].equals("--compileStatic");
+        final int first = compileStatic ? 1 : 0;
+        if (args.length - first < 4) {
+            System.err.println(
+                    "Usage: GroovyTemplatePrecompiler [--compileStatic] sourceDirectory outputDirectory "
+                            + "classNamePrefix parserClassName [customImportStatement...]"
+            );
+            System.exit(2);
+        }
+        final Path sourceDirectory = Path.of(args[first]);
+        final Path outputDirectory = Path.of(args[first + 1]);
+        final String classNamePrefix = args[first + 2];
+        final ClassLoader classLoader = GroovyTemplatePrecompiler.class.getClassLoader();
+        final Parser parser = (Parser) Class.forName(args[first + 3], true, classLoader)
+                .getDeclaredConstructor()
+                .newInstance();
+        final List<String> customImportStatements = Arrays.asList(args).subList(first + 4, args.length);
+
+        final Map<String, String> templates = new TreeMap<>();
+        if (Files.isDirectory(sourceDirectory)) {
+            try (final Stream<Path> files = Files.walk(sourceDirectory)) {
+                for (final Path file : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) {
+                    final var name = sourceDirectory.relativize(file).toString().replace(file.getFileSystem().getSeparator(), "/");
+                    templates.put(name, Files.readString(file, StandardCharsets.UTF_8));
+                }
+            }
+        }
+
+        final var precompiler = new GroovyTemplatePrecompiler(
+                () -> parser,
+                FsmBasedTokenizer::new,
+                classLoader,
+                classNamePrefix,
+                compileStatic
+        );
+        final Result<Map<String, String>> result = precompiler.precompile(templates, customImportStatements, outputDirectory);
+        if (result.hasDiagnostics()) {
+            for (final Diagnostic diagnostic : result.getDiagnostics()) {
+                System.err.println(diagnostic.getMessage());
+            }
+            System.exit(1);
+        }
+        System.out.println("Precompiled " + result.get().size() + " template(s) into " + outputDirectory);
+    }
+
+    @Override
+    public String toString() {
+        return "GroovyTemplatePrecompiler(classNamePrefix: " + this.classNamePrefix + ")";
+    }
+
+}
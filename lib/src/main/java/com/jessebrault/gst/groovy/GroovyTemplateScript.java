@@ -0,0 +1,112 @@
+package com.jessebrault.gst.groovy;
+
+import groovy.lang.Binding;
+import groovy.lang.Script;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The base class of the generated template scripts. GroovyTemplate renders with a new instance
+ * whose Binding wraps the binding Map, so that names which are not local variables resolve against
+ * the Map, as they did with the Map as the delegate of the template closure: a missing name is null,
+ * and an assignment puts into the Map. Instance fields of the script, e.g. the former local variables
+ * of a large template split into several methods, are the exception.
+ */
+public abstract class GroovyTemplateScript extends Script {
+
+    private static final ClassValue<Set<String>> fieldNames = new ClassValue<>() {
+
+        @Override
+        protected Set<String> computeValue(Class<?> type) {
+            final Set<String> names = new HashSet<>();
+            for (final Field field : type.getDeclaredFields()) {
+                if (!Modifier.isStatic(field.getModifiers()) && !field.isSynthetic()) {
+                    names.add(field.getName());
+                }
+            }
+            return names;
+        }
+
+    };
+
+    /**
+     * Reads the static text which the compiler took out of a script class into a resource next to it.
+     */
+    public static String loadStaticText(Class<?> scriptClass) {
+        final var resourceName = scriptClass.getSimpleName() + ".gsttext";
+        try (final InputStream in = scriptClass.getResourceAsStream(resourceName)) {
+            if (in == null) {
+                throw new IllegalStateException("There is no resource " + resourceName + " next to " + scriptClass.getName());
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to read " + resourceName, e);
+        }
+    }
+
+    protected GroovyTemplateScript() {}
+
+    protected GroovyTemplateScript(Binding binding) {
+        super(binding);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> getVariables() {
+        return (Map<String, Object>) this.getBinding().getVariables();
+    }
+
+    @Override
+    public Object getProperty(String property) {
+        if (fieldNames.get(this.getClass()).contains(property)) {
+            return this.getMetaClass().getProperty(this, property);
+        }
+        return this.getVariables().get(property);
+    }
+
+    @Override
+    public void setProperty(String property, Object newValue) {
+        if (fieldNames.get(this.getClass()).contains(property)) {
+            this.getMetaClass().setProperty(this, property, newValue);
+        } else {
+            this.getVariables().put(property, newValue);
+        }
+    }
+
+    /**
+     * @return the value of the binding variable, or null if there is none; used for the bindings a
+     * template declares, which are then read without dynamic dispatch.
+     */
+    public Object getBindingVariable(String name) {
+        return this.getVariables().get(name);
+    }
+
+    /**
+     * @return all the static text of the template, which renderTemplate() writes in segments with
+     * out.write(staticText, offset, length), from this very instance.
+     */
+    public String getStaticText() {
+        return "";
+    }
+
+    /**
+     * @return the offsets in getStaticText() at which the segments start and end, ascending.
+     */
+    public int[] getStaticTextOffsets() {
+        return new int[] { 0 };
+    }
+
+    /**
+     * Implemented by the generated scripts.
+     */
+    public abstract void renderTemplate(Writer out) throws IOException;
+
+}
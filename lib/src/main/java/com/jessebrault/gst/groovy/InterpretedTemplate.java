@@ -0,0 +1,136 @@
+package com.jessebrault.gst.groovy;
+
+import com.jessebrault.gst.Template;
+import com.jessebrault.gst.ast.AstNode;
+import com.jessebrault.gst.ast.AstUtil;
+import com.jessebrault.gst.ast.LeafNode;
+import com.jessebrault.gst.ast.TreeNode;
+import com.jessebrault.gst.ast.TreeNodeType;
+import com.jessebrault.gst.tokenizer.TokenType;
+import org.codehaus.groovy.runtime.FormatHelper;
+import org.codehaus.groovy.runtime.InvokerHelper;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Renders by interpreting the AST of a template made only of text, dollar references, and dollar or
+ * expression scriptlets whose body is a property path such as {@code user.name}, so that it is usable
+ * without compiling. The AST is flattened once into its text segments and property paths, which are
+ * rendered as the compiled script does: a name is looked up in the binding Map, its properties with
+ * InvokerHelper.getProperty(), and the value is written with FormatHelper.write(). Paths which Groovy
+ * might resolve to a class, e.g. {@code Math.PI}, are not interpreted; see
+ * GroovyAstToBytecodeTransformer.isBindingPath().
+ */
+final class InterpretedTemplate implements Template {
+
+    private static final Pattern propertyPath = Pattern.compile(
+            "[a-zA-Z_$][a-zA-Z0-9_$]*(?:\\.[a-zA-Z_$][a-zA-Z0-9_$]*)*"
+    );
+
+    // in a scriptlet, these refer to the closure which the script wraps the body in
+    private static final Set<String> closureVariableNames = Set.of("it", "owner", "delegate", "thisObject");
+
+    /**
+     * @return the template, or null if the root has diagnostics or anything this cannot interpret.
+     */
+    static @Nullable InterpretedTemplate of(CharSequence input, TreeNode root) {
+        if (root.getType() != TreeNodeType.G_STRING || AstUtil.hasDiagnostics(root)) {
+            return null;
+        }
+        final String text = input.toString();
+        final List<Object> parts = new ArrayList<>();
+        for (final AstNode child : root.getChildren()) {
+            if (child instanceof LeafNode leafNode && leafNode.getTokenType() == TokenType.TEXT) {
+                if (leafNode.getTokenStart() != leafNode.getTokenEnd()) {
+                    parts.add(new int[] { leafNode.getTokenStart(), leafNode.getTokenEnd() });
+                }
+            } else if (child instanceof TreeNode treeNode) {
+                final String[] path = getPath(text, treeNode);
+                if (path == null) {
+                    return null;
+                }
+                parts.add(path);
+            } else {
+                return null;
+            }
+        }
+        return new InterpretedTemplate(text, parts);
+    }
+
+    private static String @Nullable [] getPath(String text, TreeNode node) {
+        final LeafNode body = switch (node.getType()) {
+            case DOLLAR_REFERENCE -> AstUtil.getFirstChildLeafWithType(node, TokenType.DOLLAR_REFERENCE_BODY);
+            case DOLLAR_SCRIPTLET -> AstUtil.getFirstChildLeafWithType(node, TokenType.DOLLAR_SCRIPTLET_BODY);
+            case EXPRESSION_SCRIPTLET -> AstUtil.getFirstChildLeafWithType(node, TokenType.SCRIPTLET_BODY);
+            default -> null;
+        };
+        if (body == null) {
+            return null;
+        }
+        final String source = text.substring(body.getTokenStart(), body.getTokenEnd()).strip();
+        if (!propertyPath.matcher(source).matches()) {
+            return null;
+        }
+        final String[] path = source.split("\\.");
+        if (!GroovyAstToBytecodeTransformer.isBindingPath(path)
+                || (node.getType() != TreeNodeType.DOLLAR_REFERENCE && closureVariableNames.contains(path[0]))) {
+            return null;
+        }
+        return path;
+    }
+
+    private final String text;
+    // an int[] of the start and end of static text in text, or a String[] property path
+    private final List<Object> parts;
+
+    private InterpretedTemplate(String text, List<Object> parts) {
+        this.text = text;
+        this.parts = parts;
+    }
+
+    private void render(Map<String, ?> binding, Writer out) throws IOException {
+        for (final Object part : this.parts) {
+            if (part instanceof int[] range) {
+                out.write(this.text, range[0], range[1] - range[0]);
+            } else {
+                final String[] path = (String[]) part;
+                Object value = binding.get(path[0]);
+                for (int i = 1; i < path.length; i++) {
+                    value = InvokerHelper.getProperty(value, path[i]);
+                }
+                FormatHelper.write(out, value);
+            }
+        }
+    }
+
+    @Override
+    public String make(Map<String, ?> binding) {
+        final Writer w = new StringWriter();
+        try {
+            this.render(binding, w);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return w.toString();
+    }
+
+    @Override
+    public void make(Map<String, ?> binding, Appendable out) throws IOException {
+        this.render(binding, out instanceof Writer writer ? writer : new AppendableWriter(out));
+    }
+
+    @Override
+    public String toString() {
+        return "InterpretedTemplate(parts: " + this.parts.size() + ")";
+    }
+
+}
@@ -0,0 +1,89 @@
+package com.jessebrault.gst.groovy;
+
+import com.jessebrault.gst.Template;
+import com.jessebrault.gst.util.Diagnostic;
+import com.jessebrault.gst.util.Result;
+import com.jessebrault.gst.util.SimpleDiagnostic;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Gives back the Templates compiled by the GroovyTemplatePrecompiler, e.g. at build time, by loading
+ * their classes from a class loader. Nothing is parsed or compiled at runtime.
+ */
+public final class PrecompiledTemplates {
+
+    public static final String indexResourceName = "META-INF/gst/templates.properties";
+
+    /**
+     * Reads every index on the class path of classLoader, e.g. one per jar.
+     */
+    public static PrecompiledTemplates load(ClassLoader classLoader) {
+        final Map<String, String> classNames = new HashMap<>();
+        try {
+            final Enumeration<URL> indexes = classLoader.getResources(indexResourceName);
+            while (indexes.hasMoreElements()) {
+                final var properties = new Properties();
+                try (final InputStream in = indexes.nextElement().openStream()) {
+                    properties.load(in);
+                }
+                for (final String templateName : properties.stringPropertyNames()) {
+                    classNames.put(templateName, properties.getProperty(templateName));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to read the precompiled template indexes", e);
+        }
+        return new PrecompiledTemplates(classLoader, classNames);
+    }
+
+    private final ClassLoader classLoader;
+    private final Map<String, String> classNames;
+
+    private PrecompiledTemplates(ClassLoader classLoader, Map<String, String> classNames) {
+        this.classLoader = classLoader;
+        this.classNames = classNames;
+    }
+
+    public Set<String> getTemplateNames() {
+        return Collections.unmodifiableSet(this.classNames.keySet());
+    }
+
+    /**
+     * @return a new Template for the templateName, or diagnostics if there is none or it cannot be
+     * instantiated.
+     */
+    public Result<Template> get(String templateName) {
+        final var className = this.classNames.get(templateName);
+        if (className == null) {
+            final Diagnostic diagnostic = new SimpleDiagnostic("There is no precompiled template named " + templateName);
+            return Result.ofDiagnostics(List.of(diagnostic));
+        }
+        try {
+            final Class<?> scriptClass = Class.forName(className, true, this.classLoader);
+            return Result.of(new GroovyTemplate(scriptClass.asSubclass(GroovyTemplateScript.class)));
+        } catch (Exception e) {
+            final Diagnostic diagnostic = new SimpleDiagnostic(
+                    "An exception occurred while loading the precompiled template " + templateName + ": " + e.getMessage(),
+                    e
+            );
+            return Result.ofDiagnostics(List.of(diagnostic));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "PrecompiledTemplates(templateNames: " + this.classNames.keySet() + ")";
+    }
+
+}
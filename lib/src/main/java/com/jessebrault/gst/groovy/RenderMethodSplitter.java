@@ -0,0 +1,277 @@
+package com.jessebrault.gst.groovy;
+
+import org.codehaus.groovy.ast.ClassCodeExpressionTransformer;
+import org.codehaus.groovy.ast.ClassHelper;
+import org.codehaus.groovy.ast.ClassNode;
+import org.codehaus.groovy.ast.CodeVisitorSupport;
+import org.codehaus.groovy.ast.FieldNode;
+import org.codehaus.groovy.ast.MethodNode;
+import org.codehaus.groovy.ast.Parameter;
+import org.codehaus.groovy.ast.VariableScope;
+import org.codehaus.groovy.ast.expr.ArgumentListExpression;
+import org.codehaus.groovy.ast.expr.BinaryExpression;
+import org.codehaus.groovy.ast.expr.ClosureExpression;
+import org.codehaus.groovy.ast.expr.ConstantExpression;
+import org.codehaus.groovy.ast.expr.ConstructorCallExpression;
+import org.codehaus.groovy.ast.expr.DeclarationExpression;
+import org.codehaus.groovy.ast.expr.EmptyExpression;
+import org.codehaus.groovy.ast.expr.Expression;
+import org.codehaus.groovy.ast.expr.MethodCallExpression;
+import org.codehaus.groovy.ast.expr.PropertyExpression;
+import org.codehaus.groovy.ast.expr.StaticMethodCallExpression;
+import org.codehaus.groovy.ast.expr.TupleExpression;
+import org.codehaus.groovy.ast.expr.VariableExpression;
+import org.codehaus.groovy.ast.stmt.BlockStatement;
+import org.codehaus.groovy.ast.stmt.EmptyStatement;
+import org.codehaus.groovy.ast.stmt.ExpressionStatement;
+import org.codehaus.groovy.ast.stmt.ReturnStatement;
+import org.codehaus.groovy.ast.stmt.Statement;
+import org.codehaus.groovy.classgen.GeneratorContext;
+import org.codehaus.groovy.control.CompilePhase;
+import org.codehaus.groovy.control.SourceUnit;
+import org.codehaus.groovy.control.customizers.CompilationCustomizer;
+import org.codehaus.groovy.syntax.Token;
+import org.codehaus.groovy.syntax.Types;
+
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Moves the top-level statements of a large renderTemplate() into methods of their own, which
+ * renderTemplate() then calls in order, so that no method passes the 64 KB limit of the JVM. A
+ * single statement, e.g. a loop over a large part of the template, is never split.
+ *
+ * The top-level local variables of a split template become instance fields, so that later methods
+ * still see them; GroovyTemplateScript does not look fields up in the binding. As each render uses
+ * a new script instance, they are still local to the render. The fields have mangled names, e.g.
+ * gstLocal$x, and only the references after the declaration, where the local is in scope, are
+ * renamed, so that an earlier {@code x} is still looked up in the binding. Templates which return
+ * from renderTemplate() are not split.
+ *
+ * The methods have the annotations of renderTemplate(), e.g. @CompileStatic. A statically compiled
+ * template should then give its top-level locals a type, as their fields are otherwise Objects.
+ */
+final class RenderMethodSplitter extends CompilationCustomizer {
+
+    // roughly the expressions of a method; a Groovy expression takes a few bytes of bytecode
+    private static final int maxMethodSize = 4000;
+
+    private static final String fieldNamePrefix = "gstLocal$";
+
+    RenderMethodSplitter() {
+        super(CompilePhase.CONVERSION);
+    }
+
+    private static final class SizeVisitor extends CodeVisitorSupport {
+
+        private int size;
+        private boolean returns;
+
+        @Override
+        public void visitMethodCallExpression(MethodCallExpression call) {
+            this.size++;
+            super.visitMethodCallExpression(call);
+        }
+
+        @Override
+        public void visitStaticMethodCallExpression(StaticMethodCallExpression call) {
+            this.size++;
+            super.visitStaticMethodCallExpression(call);
+        }
+
+        @Override
+        public void visitConstructorCallExpression(ConstructorCallExpression call) {
+            this.size++;
+            super.visitConstructorCallExpression(call);
+        }
+
+        @Override
+        public void visitBinaryExpression(BinaryExpression expression) {
+            this.size++;
+            super.visitBinaryExpression(expression);
+        }
+
+        @Override
+        public void visitPropertyExpression(PropertyExpression expression) {
+            this.size++;
+            super.visitPropertyExpression(expression);
+        }
+
+        @Override
+        public void visitVariableExpression(VariableExpression expression) {
+            this.size++;
+        }
+
+        @Override
+        public void visitConstantExpression(ConstantExpression expression) {
+            this.size++;
+        }
+
+        @Override
+        public void visitClosureExpression(ClosureExpression expression) {
+            // the body is compiled into a class of its own
+            this.size++;
+        }
+
+        @Override
+        public void visitReturnStatement(ReturnStatement statement) {
+            this.returns = true;
+            super.visitReturnStatement(statement);
+        }
+
+    }
+
+    @Override
+    public void call(SourceUnit source, GeneratorContext context, ClassNode classNode) {
+        if (!classNode.isScript()) {
+            return;
+        }
+        for (final MethodNode renderMethod : classNode.getMethods("renderTemplate")) {
+            if (renderMethod.getParameters().length == 1 && renderMethod.getCode() instanceof BlockStatement block) {
+                this.split(source, classNode, renderMethod, block);
+            }
+        }
+    }
+
+    private void split(SourceUnit source, ClassNode classNode, MethodNode renderMethod, BlockStatement block) {
+        final List<Statement> statements = block.getStatements();
+        final int[] sizes = new int[statements.size()];
+        int totalSize = 0;
+        for (int i = 0; i < statements.size(); i++) {
+            final var sizeVisitor = new SizeVisitor();
+            statements.get(i).visit(sizeVisitor);
+            if (sizeVisitor.returns) {
+                return;
+            }
+            sizes[i] = sizeVisitor.size;
+            totalSize += sizeVisitor.size;
+        }
+        if (totalSize <= maxMethodSize) {
+            return;
+        }
+
+        final List<Statement> calls = new ArrayList<>();
+        List<Statement> chunk = new ArrayList<>();
+        int chunkSize = 0;
+        // the locals declared so far, which later statements refer to by their fields
+        final Set<String> declaredNames = new HashSet<>();
+        for (int i = 0; i < statements.size(); i++) {
+            if (!chunk.isEmpty() && chunkSize + sizes[i] > maxMethodSize) {
+                calls.add(addChunkMethod(classNode, renderMethod, calls.size(), chunk));
+                chunk = new ArrayList<>();
+                chunkSize = 0;
+            }
+            final Statement statement = statements.get(i);
+            if (!declaredNames.isEmpty()) {
+                renameReferences(source, statement, declaredNames);
+            }
+            chunk.add(toFieldAssignment(classNode, statement, declaredNames));
+            chunkSize += sizes[i];
+        }
+        calls.add(addChunkMethod(classNode, renderMethod, calls.size(), chunk));
+        renderMethod.setCode(new BlockStatement(calls, new VariableScope()));
+    }
+
+    private static Statement addChunkMethod(
+            ClassNode classNode,
+            MethodNode renderMethod,
+            int index,
+            List<Statement> statements
+    ) {
+        final Parameter out = renderMethod.getParameters()[0];
+        final var name = "gstRenderChunk" + index;
+        final MethodNode chunkMethod = classNode.addMethod(
+                name,
+                Modifier.PUBLIC,
+                ClassHelper.VOID_TYPE,
+                new Parameter[] { new Parameter(out.getType(), out.getName()) },
+                ClassNode.EMPTY_ARRAY,
+                new BlockStatement(statements, new VariableScope())
+        );
+        chunkMethod.addAnnotations(renderMethod.getAnnotations());
+        return new ExpressionStatement(new MethodCallExpression(
+                new VariableExpression("this"),
+                name,
+                new ArgumentListExpression(new VariableExpression(out.getName()))
+        ));
+    }
+
+    /**
+     * Renames the references to the declared locals in the statement, including in its closures, to
+     * their fields.
+     */
+    private static void renameReferences(SourceUnit source, Statement statement, Set<String> declaredNames) {
+        statement.visit(new ClassCodeExpressionTransformer() {
+
+            @Override
+            protected SourceUnit getSourceUnit() {
+                return source;
+            }
+
+            @Override
+            public Expression transform(Expression expression) {
+                if (expression instanceof VariableExpression variable && declaredNames.contains(variable.getName())) {
+                    final var renamed = new VariableExpression(fieldNamePrefix + variable.getName());
+                    renamed.setSourcePosition(variable);
+                    return renamed;
+                }
+                if (expression instanceof ClosureExpression closureExpression) {
+                    closureExpression.getCode().visit(this);
+                    return closureExpression;
+                }
+                return super.transform(expression);
+            }
+
+        });
+    }
+
+    /**
+     * Turns a declaration of local variables into fields and an assignment to them, and adds their
+     * names to declaredNames.
+     */
+    private static Statement toFieldAssignment(ClassNode classNode, Statement statement, Set<String> declaredNames) {
+        if (!(statement instanceof ExpressionStatement expressionStatement)
+                || !(expressionStatement.getExpression() instanceof DeclarationExpression declaration)) {
+            return statement;
+        }
+        final List<VariableExpression> variables = new ArrayList<>();
+        if (declaration.isMultipleAssignmentDeclaration()) {
+            for (final Expression expression : declaration.getTupleExpression().getExpressions()) {
+                variables.add((VariableExpression) expression);
+            }
+        } else {
+            variables.add(declaration.getVariableExpression());
+        }
+        final List<Expression> targets = new ArrayList<>();
+        for (final VariableExpression variable : variables) {
+            final var fieldName = fieldNamePrefix + variable.getName();
+            declaredNames.add(variable.getName());
+            if (classNode.getDeclaredField(fieldName) == null) {
+                classNode.addField(new FieldNode(
+                        fieldName,
+                        Modifier.PRIVATE,
+                        variable.getOriginType(),
+                        classNode,
+                        null
+                ));
+            }
+            targets.add(new VariableExpression(fieldName));
+        }
+        final Expression value = declaration.getRightExpression();
+        if (value instanceof EmptyExpression) {
+            return EmptyStatement.INSTANCE;
+        }
+        final Expression target = declaration.isMultipleAssignmentDeclaration()
+                ? new TupleExpression(targets)
+                : targets.get(0);
+        final var assignment = new BinaryExpression(target, Token.newSymbol(Types.ASSIGN, -1, -1), value);
+        assignment.setSourcePosition(declaration);
+        final var assignmentStatement = new ExpressionStatement(assignment);
+        assignmentStatement.setSourcePosition(statement);
+        return assignmentStatement;
+    }
+
+}
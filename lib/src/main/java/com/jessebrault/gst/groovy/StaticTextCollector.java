@@ -0,0 +1,120 @@
+package com.jessebrault.gst.groovy;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Collects the static text of a template into one backing String for the GroovyAstToScriptTransformer
+ * and the GroovyScriptParserAccumulator, which write the same script text with it. Adjacent text, e.g.
+ * around an import block or a comment, is written with one out.write(gstStaticText, offset, length).
+ *
+ * The text is written into the script verbatim, as single-quoted literals, so a backslash or a
+ * dollar sign in the template is just that.
+ */
+final class StaticTextCollector {
+
+    // a literal must fit the class file constant pool, which takes up to 65535 bytes of modified UTF-8
+    private static final int maxLiteralLength = 16384;
+
+    private final StringBuilder staticText = new StringBuilder();
+    private final List<Integer> offsets = new ArrayList<>(List.of(0));
+    private int pendingStart = -1;
+
+    void append(CharSequence text, int start, int end) {
+        if (start == end) {
+            return;
+        }
+        if (this.pendingStart == -1) {
+            this.pendingStart = this.staticText.length();
+        }
+        this.staticText.append(text, start, end);
+    }
+
+    /**
+     * Writes the write of the text appended since the last call, if any. Must be called before
+     * anything else is written to the render method.
+     */
+    void appendPendingWrite(StringBuilder b, String indent) {
+        if (this.pendingStart != -1) {
+            b.append(indent).append("out.write(gstStaticText, ")
+                    .append(this.pendingStart).append(", ")
+                    .append(this.staticText.length() - this.pendingStart).append(")\n");
+            this.offsets.add(this.staticText.length());
+            this.pendingStart = -1;
+        }
+    }
+
+    /**
+     * Writes the base script declaration, the gstStaticText and gstStaticTextOffsets fields and their
+     * getters; see GroovyTemplateScript.
+     */
+    void appendDeclarations(StringBuilder b) {
+        b.append("@groovy.transform.BaseScript\n");
+        b.append("com.jessebrault.gst.groovy.GroovyTemplateScript gstScript\n");
+        b.append("\n");
+        b.append("@groovy.transform.Field\n");
+        b.append("static final String gstStaticText = ");
+        if (this.staticText.isEmpty()) {
+            b.append("''");
+        }
+        int start = 0;
+        while (start < this.staticText.length()) {
+            int end = Math.min(start + maxLiteralLength, this.staticText.length());
+            if (end < this.staticText.length() && Character.isHighSurrogate(this.staticText.charAt(end - 1))) {
+                end--; // keep surrogate pairs together
+            }
+            if (start > 0) {
+                b.append(" +\n        ");
+            }
+            appendLiteral(b, this.staticText, start, end);
+            start = end;
+        }
+        b.append("\n");
+        b.append("@groovy.transform.Field\n");
+        b.append("static final int[] gstStaticTextOffsets = [");
+        for (int i = 0; i < this.offsets.size(); i++) {
+            if (i > 0) {
+                b.append(", ");
+            }
+            b.append(this.offsets.get(i));
+        }
+        b.append("] as int[]\n");
+        b.append("\n");
+        b.append("String getStaticText() {\n");
+        b.append("    return gstStaticText\n");
+        b.append("}\n");
+        b.append("\n");
+        b.append("int[] getStaticTextOffsets() {\n");
+        b.append("    return gstStaticTextOffsets\n");
+        b.append("}\n");
+        b.append("\n");
+    }
+
+    private static void appendLiteral(StringBuilder b, CharSequence text, int start, int end) {
+        b.append('\'');
+        for (int i = start; i < end; i++) {
+            final char c = text.charAt(i);
+            switch (c) {
+                case '\\' -> b.append("\\\\");
+                case '\'' -> b.append("\\'");
+                case '\n' -> b.append("\\n");
+                case '\r' -> b.append("\\r");
+                case '\t' -> b.append("\\t");
+                default -> {
+                    if (c < 0x20 || c == 0x7f) {
+                        b.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        b.append(c);
+                    }
+                }
+            }
+        }
+        b.append('\'');
+    }
+
+    @Override
+    public String toString() {
+        return "StaticTextCollector(length: " + this.staticText.length() + ", offsets: " + this.offsets + ")";
+    }
+
+}
@@ -0,0 +1,73 @@
+package com.jessebrault.gst.groovy;
+
+import org.codehaus.groovy.ast.ClassHelper;
+import org.codehaus.groovy.ast.ClassNode;
+import org.codehaus.groovy.ast.FieldNode;
+import org.codehaus.groovy.ast.expr.ArgumentListExpression;
+import org.codehaus.groovy.ast.expr.BinaryExpression;
+import org.codehaus.groovy.ast.expr.ClassExpression;
+import org.codehaus.groovy.ast.expr.ConstantExpression;
+import org.codehaus.groovy.ast.expr.Expression;
+import org.codehaus.groovy.ast.expr.StaticMethodCallExpression;
+import org.codehaus.groovy.classgen.GeneratorContext;
+import org.codehaus.groovy.control.CompilePhase;
+import org.codehaus.groovy.control.SourceUnit;
+import org.codehaus.groovy.control.customizers.CompilationCustomizer;
+import org.codehaus.groovy.syntax.Types;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Takes static text too long for one class file constant, which the StaticTextCollector writes as
+ * several literals, out of the class: gstStaticText is then read by GroovyTemplateScript.loadStaticText()
+ * from a resource next to the class, which CompilationUtil.getResources() gives back after compiling.
+ */
+final class StaticTextExternalizer extends CompilationCustomizer {
+
+    static final String resourceSuffix = ".gsttext";
+
+    StaticTextExternalizer() {
+        super(CompilePhase.CANONICALIZATION);
+    }
+
+    @Override
+    public void call(SourceUnit source, GeneratorContext context, ClassNode classNode) {
+        if (!classNode.isScript()) {
+            return;
+        }
+        final FieldNode field = classNode.getDeclaredField("gstStaticText");
+        if (field == null || !(field.getInitialExpression() instanceof BinaryExpression initialExpression)) {
+            return;
+        }
+        final var text = new StringBuilder();
+        if (!appendConstants(initialExpression, text)) {
+            return;
+        }
+        field.setInitialValueExpression(new StaticMethodCallExpression(
+                ClassHelper.make(GroovyTemplateScript.class),
+                "loadStaticText",
+                new ArgumentListExpression(new ClassExpression(classNode))
+        ));
+        classNode.putNodeMetaData(StaticTextExternalizer.class, text.toString());
+    }
+
+    // 'a' + 'b' + ...
+    private static boolean appendConstants(Expression expression, StringBuilder text) {
+        if (expression instanceof ConstantExpression constantExpression
+                && constantExpression.getValue() instanceof String value) {
+            text.append(value);
+            return true;
+        }
+        return expression instanceof BinaryExpression binaryExpression
+                && binaryExpression.getOperation().getType() == Types.PLUS
+                && appendConstants(binaryExpression.getLeftExpression(), text)
+                && appendConstants(binaryExpression.getRightExpression(), text);
+    }
+
+    /**
+     * @return the static text taken out of the class, if any.
+     */
+    static @Nullable String getStaticText(ClassNode classNode) {
+        return classNode.getNodeMetaData(StaticTextExternalizer.class);
+    }
+
+}
@@ -0,0 +1,45 @@
+package com.jessebrault.gst.groovy;
+
+import groovy.lang.GroovyClassLoader;
+import org.codehaus.groovy.tools.GroovyClass;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Defines the classes of one template which were compiled elsewhere, e.g. together with other
+ * templates in one CompilationUnit, and serves the resources they need; see CompilationUtil.getResources().
+ */
+final class TemplateClassLoader extends GroovyClassLoader {
+
+    private final Map<String, byte[]> resources = new HashMap<>();
+
+    TemplateClassLoader(ClassLoader parent) {
+        super(parent);
+    }
+
+    /**
+     * Must be called before the classes which read them are initialized.
+     */
+    void defineResources(Map<String, byte[]> resources) {
+        this.resources.putAll(resources);
+    }
+
+    @Override
+    public InputStream getResourceAsStream(String name) {
+        final byte[] resource = this.resources.get(name);
+        return resource != null ? new ByteArrayInputStream(resource) : super.getResourceAsStream(name);
+    }
+
+    void defineClasses(Collection<GroovyClass> classes) {
+        for (final GroovyClass groovyClass : classes) {
+            final Class<?> definedClass = this.defineClass(groovyClass.getName(), groovyClass.getBytes());
+            // so that getLoadedClasses(), and so GroovyTemplate.close(), sees it
+            this.setClassCacheEntry(definedClass);
+        }
+    }
+
+}
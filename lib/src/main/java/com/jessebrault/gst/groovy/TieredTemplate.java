@@ -0,0 +1,104 @@
+package com.jessebrault.gst.groovy;
+
+import com.jessebrault.gst.Template;
+import com.jessebrault.gst.util.Result;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Renders with an InterpretedTemplate until the compiled Template is ready, then swaps to it; renders
+ * already running finish with the one they started with. If compiling fails, the template keeps
+ * being interpreted, and the diagnostics are logged.
+ */
+final class TieredTemplate implements Template, AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(TieredTemplate.class);
+
+    private final CompletableFuture<Result<Template>> compiled;
+
+    private volatile Template current;
+    private volatile boolean closed;
+
+    TieredTemplate(InterpretedTemplate interpreted, CompletableFuture<Result<Template>> compiled) {
+        this.current = interpreted;
+        this.compiled = compiled.whenComplete((result, exception) -> {
+            if (exception != null) {
+                logger.warn("Exception while compiling template; it is still interpreted", exception);
+            } else if (result.hasDiagnostics()) {
+                logger.warn("Unable to compile template; it is still interpreted: {}", result.getDiagnostics());
+            } else {
+                this.current = result.get();
+                if (this.closed) {
+                    closeCompiled(result.get());
+                }
+            }
+        });
+    }
+
+    /**
+     * @return the compilation, which completes once the Template renders compiled, or failed to.
+     */
+    CompletableFuture<Result<Template>> getCompiled() {
+        return this.compiled;
+    }
+
+    @Override
+    public String make(Map<String, ?> binding) {
+        return this.current.make(binding);
+    }
+
+    @Override
+    public void make(Map<String, ?> binding, Appendable out) throws IOException {
+        this.current.make(binding, out);
+    }
+
+    @Override
+    public void makeUtf8(Map<String, ?> binding, OutputStream out) throws IOException {
+        this.current.makeUtf8(binding, out);
+    }
+
+    @Override
+    public void makeUtf8(Map<String, ?> binding, WritableByteChannel out) throws IOException {
+        this.current.makeUtf8(binding, out);
+    }
+
+    @Override
+    public void makeUtf8(Map<String, ?> binding, ByteBuffer out) {
+        this.current.makeUtf8(binding, out);
+    }
+
+    private static void closeCompiled(Template template) {
+        if (template instanceof AutoCloseable closeable) {
+            try {
+                closeable.close();
+            } catch (Exception e) {
+                logger.warn("Exception while closing compiled template", e);
+            }
+        }
+    }
+
+    /**
+     * Closes the compiled Template, if it is AutoCloseable, now or once it is ready.
+     */
+    @Override
+    public void close() {
+        this.closed = true;
+        final Template current = this.current;
+        if (!(current instanceof InterpretedTemplate)) {
+            closeCompiled(current);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "TieredTemplate(current: " + this.current + ")";
+    }
+
+}
@@ -0,0 +1,136 @@
+package com.jessebrault.gst.groovy;
+
+import com.jessebrault.gst.Template;
+import com.jessebrault.gst.TemplateCreator;
+import com.jessebrault.gst.ast.TreeNode;
+import com.jessebrault.gst.parser.Parser;
+import com.jessebrault.gst.parser.TreeNodeParserAccumulator;
+import com.jessebrault.gst.tokenizer.FsmBasedTokenizer;
+import com.jessebrault.gst.tokenizer.Tokenizer;
+import com.jessebrault.gst.tokenizer.TokenizerBasedTokenProvider;
+import com.jessebrault.gst.tokenizer.TokenizerState;
+import com.jessebrault.gst.util.ExecutorUtil;
+import com.jessebrault.gst.util.Result;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+/**
+ * Wraps another TemplateCreator, e.g. a GroovyTemplateCreator, and makes templates which an
+ * InterpretedTemplate can render usable at once: create() returns a Template which is interpreted
+ * while the delegate compiles it on the executor, and which renders compiled once that is done; see
+ * TieredTemplate. Other templates, and all templates with custom import statements, which could
+ * change what a name resolves to, are created by the delegate as they are.
+ *
+ * As the compiled Template is not waited for, the diagnostics of compiling an interpreted template
+ * are only logged. Wrap this in a CachingTemplateCreator to compile each template only once.
+ */
+public final class TieredTemplateCreator implements TemplateCreator {
+
+    private final TemplateCreator delegate;
+    private final Supplier<Parser> parserSupplier;
+    private final Supplier<Tokenizer> tokenizerSupplier;
+    private final Executor executor;
+
+    public TieredTemplateCreator(TemplateCreator delegate, Supplier<Parser> parserSupplier) {
+        this(delegate, parserSupplier, FsmBasedTokenizer::new, ExecutorUtil.getDefaultExecutor());
+    }
+
+    /**
+     * @param parserSupplier should give the same parser as the delegate uses.
+     * @param executor the executor to compile on.
+     */
+    public TieredTemplateCreator(
+            TemplateCreator delegate,
+            Supplier<Parser> parserSupplier,
+            Supplier<Tokenizer> tokenizerSupplier,
+            Executor executor
+    ) {
+        this.delegate = delegate;
+        this.parserSupplier = parserSupplier;
+        this.tokenizerSupplier = tokenizerSupplier;
+        this.executor = executor;
+    }
+
+    private @Nullable InterpretedTemplate interpret(CharSequence input) {
+        final var acc = new TreeNodeParserAccumulator();
+        this.parserSupplier.get().parse(
+                new TokenizerBasedTokenProvider(this.tokenizerSupplier, input, 0, input.length(), TokenizerState.TEXT),
+                acc
+        );
+        final TreeNode root = acc.getResult();
+        return InterpretedTemplate.of(input, root);
+    }
+
+    @Override
+    public Result<Template> create(CharSequence input, Collection<String> customImportStatements) {
+        if (!customImportStatements.isEmpty()) {
+            return this.delegate.create(input, customImportStatements);
+        }
+        final InterpretedTemplate interpreted = this.interpret(input);
+        if (interpreted == null) {
+            return this.delegate.create(input, customImportStatements);
+        }
+        return Result.of(new TieredTemplate(
+                interpreted,
+                this.delegate.createAsync(input, customImportStatements, this.executor)
+        ));
+    }
+
+    /**
+     * Interprets what it can at once, and has the delegate create the rest, and compile the
+     * interpreted ones in the background, each with one call to its createAll().
+     */
+    @Override
+    public CompletableFuture<List<Result<Template>>> createAll(
+            List<? extends CharSequence> inputs,
+            Collection<String> customImportStatements,
+            Executor executor
+    ) {
+        if (!customImportStatements.isEmpty()) {
+            return this.delegate.createAll(inputs, customImportStatements, executor);
+        }
+        final List<InterpretedTemplate> interpretedTemplates = new ArrayList<>(inputs.size());
+        final List<CharSequence> interpretedInputs = new ArrayList<>();
+        final List<CharSequence> otherInputs = new ArrayList<>();
+        for (final CharSequence input : inputs) {
+            final InterpretedTemplate interpreted = this.interpret(input);
+            interpretedTemplates.add(interpreted);
+            (interpreted != null ? interpretedInputs : otherInputs).add(input);
+        }
+        final CompletableFuture<List<Result<Template>>> compiledFuture = interpretedInputs.isEmpty()
+                ? CompletableFuture.completedFuture(List.of())
+                : this.delegate.createAll(interpretedInputs, customImportStatements, this.executor);
+        final CompletableFuture<List<Result<Template>>> othersFuture = otherInputs.isEmpty()
+                ? CompletableFuture.completedFuture(List.of())
+                : this.delegate.createAll(otherInputs, customImportStatements, executor);
+        return othersFuture.thenApply(others -> {
+            final List<Result<Template>> results = new ArrayList<>(inputs.size());
+            int interpretedIndex = 0;
+            int otherIndex = 0;
+            for (final InterpretedTemplate interpreted : interpretedTemplates) {
+                if (interpreted != null) {
+                    final int index = interpretedIndex++;
+                    results.add(Result.of(new TieredTemplate(
+                            interpreted,
+                            compiledFuture.thenApply(compiled -> compiled.get(index))
+                    )));
+                } else {
+                    results.add(others.get(otherIndex++));
+                }
+            }
+            return results;
+        });
+    }
+
+    @Override
+    public String toString() {
+        return "TieredTemplateCreator(delegate: " + this.delegate + ")";
+    }
+
+}
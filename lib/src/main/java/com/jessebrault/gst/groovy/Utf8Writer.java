@@ -0,0 +1,185 @@
+package com.jessebrault.gst.groovy;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Encodes to UTF-8 into a ByteSink. Segments of the StaticText, written with write(String, int, int)
+ * on the very same String instance, are written as their already encoded bytes; everything else is
+ * encoded as it is written.
+ *
+ * Unpaired surrogates are written as '?', as String.getBytes() does. Call finish() when done.
+ */
+final class Utf8Writer extends Writer {
+
+    @FunctionalInterface
+    interface ByteSink {
+        void write(byte[] b, int off, int len) throws IOException;
+    }
+
+    /**
+     * The static text of a template, e.g. GroovyTemplateScript.getStaticText(), and its bytes, with the
+     * offsets of the segments in both.
+     */
+    static final class StaticText {
+
+        static StaticText encode(String text, int[] offsets) {
+            final int[] byteOffsets = new int[offsets.length];
+            for (int i = 1; i < offsets.length; i++) {
+                byteOffsets[i] = byteOffsets[i - 1]
+                        + text.substring(offsets[i - 1], offsets[i]).getBytes(StandardCharsets.UTF_8).length;
+            }
+            return new StaticText(text, offsets, text.getBytes(StandardCharsets.UTF_8), byteOffsets);
+        }
+
+        private final String text;
+        private final int[] offsets;
+        private final byte[] bytes;
+        private final int[] byteOffsets;
+
+        StaticText(String text, int[] offsets, byte[] bytes, int[] byteOffsets) {
+            this.text = text;
+            this.offsets = offsets;
+            this.bytes = bytes;
+            this.byteOffsets = byteOffsets;
+        }
+
+        @Override
+        public String toString() {
+            return "StaticText(length: " + this.text.length() + ", offsets: " + Arrays.toString(this.offsets) + ")";
+        }
+
+    }
+
+    private static final int bufferSize = 8192;
+
+    private final @Nullable StaticText staticText;
+    private final ByteSink sink;
+    private final byte[] buffer = new byte[bufferSize];
+    private int position;
+    private char highSurrogate; // 0 if none pending
+
+    Utf8Writer(@Nullable StaticText staticText, ByteSink sink) {
+        this.staticText = staticText;
+        this.sink = sink;
+    }
+
+    private void flushBuffer() throws IOException {
+        if (this.position > 0) {
+            this.sink.write(this.buffer, 0, this.position);
+            this.position = 0;
+        }
+    }
+
+    private void writeBytes(byte[] bytes, int off, int len) throws IOException {
+        this.writePendingSurrogate();
+        if (len <= bufferSize - this.position) {
+            System.arraycopy(bytes, off, this.buffer, this.position, len);
+            this.position += len;
+        } else {
+            this.flushBuffer();
+            this.sink.write(bytes, off, len);
+        }
+    }
+
+    private void writePendingSurrogate() throws IOException {
+        if (this.highSurrogate != 0) {
+            this.highSurrogate = 0;
+            this.encode('?');
+        }
+    }
+
+    private void encode(char c) throws IOException {
+        if (bufferSize - this.position < 4) {
+            this.flushBuffer();
+        }
+        final byte[] b = this.buffer;
+        if (this.highSurrogate != 0) {
+            if (Character.isLowSurrogate(c)) {
+                final int codePoint = Character.toCodePoint(this.highSurrogate, c);
+                this.highSurrogate = 0;
+                b[this.position++] = (byte) (0xf0 | (codePoint >> 18));
+                b[this.position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+                b[this.position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+                b[this.position++] = (byte) (0x80 | (codePoint & 0x3f));
+                return;
+            }
+            this.highSurrogate = 0;
+            b[this.position++] = '?';
+        }
+        if (c < 0x80) {
+            b[this.position++] = (byte) c;
+        } else if (c < 0x800) {
+            b[this.position++] = (byte) (0xc0 | (c >> 6));
+            b[this.position++] = (byte) (0x80 | (c & 0x3f));
+        } else if (Character.isHighSurrogate(c)) {
+            this.highSurrogate = c;
+        } else if (Character.isLowSurrogate(c)) {
+            b[this.position++] = '?';
+        } else {
+            b[this.position++] = (byte) (0xe0 | (c >> 12));
+            b[this.position++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+            b[this.position++] = (byte) (0x80 | (c & 0x3f));
+        }
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+        this.encode((char) c);
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        for (int i = off; i < off + len; i++) {
+            this.encode(cbuf[i]);
+        }
+    }
+
+    @Override
+    public void write(String str) throws IOException {
+        this.write(str, 0, str.length());
+    }
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+        final StaticText staticText = this.staticText;
+        if (staticText != null && str == staticText.text) {
+            final int start = Arrays.binarySearch(staticText.offsets, off);
+            final int end = Arrays.binarySearch(staticText.offsets, off + len);
+            if (start >= 0 && end >= 0) {
+                final int byteStart = staticText.byteOffsets[start];
+                this.writeBytes(staticText.bytes, byteStart, staticText.byteOffsets[end] - byteStart);
+                return;
+            }
+        }
+        for (int i = off; i < off + len; i++) {
+            this.encode(str.charAt(i));
+        }
+    }
+
+    /**
+     * Writes the buffered bytes to the sink, but does not flush the sink itself.
+     */
+    @Override
+    public void flush() throws IOException {
+        this.flushBuffer();
+    }
+
+    /**
+     * Writes any unpaired surrogate left at the end and flushes.
+     */
+    void finish() throws IOException {
+        this.writePendingSurrogate();
+        this.flushBuffer();
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.finish();
+    }
+
+}
@@ -1,6 +1,5 @@
 package com.jessebrault.gst.groovy.adapter;
 
-import com.jessebrault.gst.groovy.GroovyTemplate;
 import com.jessebrault.gst.groovy.GroovyTemplateCreator;
 import com.jessebrault.gst.parser.Parser;
 import groovy.lang.Writable;
@@ -17,25 +16,22 @@ public final class GroovyTemplateEngineAdapter extends TemplateEngine {
 
     private static final class GroovyTemplateAdapter implements Template {
 
-        private final GroovyTemplate delegate;
+        private final com.jessebrault.gst.Template delegate;
 
-        public GroovyTemplateAdapter(GroovyTemplate delegate) {
+        public GroovyTemplateAdapter(com.jessebrault.gst.Template delegate) {
             this.delegate = delegate;
         }
 
         @Override
         public Writable make() {
-            return writer -> {
-                writer.write(this.delegate.make(Map.of()));
-                return writer;
-            };
+            return this.make(Map.of());
         }
 
         @SuppressWarnings("unchecked")
         @Override
         public Writable make(Map binding) {
             return writer -> {
-                writer.write(this.delegate.make(binding));
+                this.delegate.make(binding, writer);
                 return writer;
             };
         }
@@ -80,7 +76,7 @@ public final class GroovyTemplateEngineAdapter extends TemplateEngine {
             }
             throw new RuntimeException("Should not get here.");
         } else {
-            return new GroovyTemplateAdapter((GroovyTemplate) result.get());
+            return new GroovyTemplateAdapter(result.get());
         }
     }
 
@@ -0,0 +1,142 @@
+package com.jessebrault.gst.parser;
+
+import com.jessebrault.gst.ast.FlatAst;
+import com.jessebrault.gst.ast.TreeNodeType;
+import com.jessebrault.gst.tokenizer.TokenType;
+import com.jessebrault.gst.util.Diagnostic;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Accumulates the AST into a FlatAst, allocating only when its arrays grow or a node has diagnostics.
+ */
+public final class FlatAstParserAccumulator implements ParserAccumulator {
+
+    private static final int initialCapacity = 64;
+
+    private int size;
+    private int[] kinds = new int[initialCapacity];
+    private int[] starts = new int[initialCapacity];
+    private int[] ends = new int[initialCapacity];
+    private int[] firstChildren = new int[initialCapacity];
+    private int[] nextSiblings = new int[initialCapacity];
+    private int[] parents = new int[initialCapacity];
+    private final Map<Integer, Collection<Diagnostic>> diagnostics = new HashMap<>();
+
+    // Only needed while accumulating, to append children in O(1).
+    private int[] lastChildren = new int[initialCapacity];
+
+    private int currentParent = -1;
+    private int lastEnd;
+
+    private FlatAst result;
+
+    private void ensureCapacity() {
+        if (this.size == this.kinds.length) {
+            final int newCapacity = this.size * 2;
+            this.kinds = Arrays.copyOf(this.kinds, newCapacity);
+            this.starts = Arrays.copyOf(this.starts, newCapacity);
+            this.ends = Arrays.copyOf(this.ends, newCapacity);
+            this.firstChildren = Arrays.copyOf(this.firstChildren, newCapacity);
+            this.nextSiblings = Arrays.copyOf(this.nextSiblings, newCapacity);
+            this.parents = Arrays.copyOf(this.parents, newCapacity);
+            this.lastChildren = Arrays.copyOf(this.lastChildren, newCapacity);
+        }
+    }
+
+    private int addNode(int kind, int start, int end) {
+        if (this.result != null) {
+            throw new IllegalStateException("already done accumulating AST");
+        }
+        this.ensureCapacity();
+        final int node = this.size++;
+        this.kinds[node] = kind;
+        this.starts[node] = start;
+        this.ends[node] = end;
+        this.firstChildren[node] = -1;
+        this.lastChildren[node] = -1;
+        this.nextSiblings[node] = -1;
+        this.parents[node] = this.currentParent;
+        if (this.currentParent != -1) {
+            final int lastSibling = this.lastChildren[this.currentParent];
+            if (lastSibling == -1) {
+                this.firstChildren[this.currentParent] = node;
+            } else {
+                this.nextSiblings[lastSibling] = node;
+            }
+            this.lastChildren[this.currentParent] = node;
+        } else if (node != 0) {
+            throw new IllegalStateException("the AST may only have one root");
+        }
+        return node;
+    }
+
+    private void putDiagnostics(int node, Collection<Diagnostic> diagnostics) {
+        if (!diagnostics.isEmpty()) {
+            this.diagnostics.put(node, diagnostics);
+        }
+    }
+
+    @Override
+    public void start(TreeNodeType type) {
+        // start is -1 until the first leaf arrives
+        this.currentParent = this.addNode(FlatAst.treeKind(type), -1, -1);
+    }
+
+    @Override
+    public void leaf(TokenType type, int start, int end, Collection<Diagnostic> diagnostics) {
+        if (this.currentParent == -1) {
+            throw new IllegalStateException("no current parent for leaf");
+        }
+        this.putDiagnostics(this.addNode(FlatAst.leafKind(type), start, end), diagnostics);
+        int ancestor = this.currentParent;
+        while (ancestor != -1 && this.starts[ancestor] == -1) {
+            this.starts[ancestor] = start;
+            ancestor = this.parents[ancestor];
+        }
+        this.lastEnd = end;
+    }
+
+    @Override
+    public void done(Collection<Diagnostic> diagnostics) {
+        final int node = this.currentParent;
+        if (node == -1) {
+            throw new IllegalStateException("no current parent to finish");
+        }
+        if (this.starts[node] == -1) {
+            this.starts[node] = this.lastEnd;
+        }
+        this.ends[node] = this.lastEnd;
+        this.putDiagnostics(node, diagnostics);
+        this.currentParent = this.parents[node];
+        if (this.currentParent == -1) {
+            this.result = new FlatAst(
+                    this.size,
+                    this.kinds,
+                    this.starts,
+                    this.ends,
+                    this.firstChildren,
+                    this.nextSiblings,
+                    this.parents,
+                    this.diagnostics
+            );
+            this.lastChildren = null;
+        }
+    }
+
+    public FlatAst getResult() {
+        if (this.result == null) {
+            throw new IllegalStateException("not done accumulating AST yet");
+        }
+        return this.result;
+    }
+
+    @Override
+    public String toString() {
+        return "FlatAstParserAccumulator(size: " + this.size + ", currentParent: " + this.currentParent + ")";
+    }
+
+}
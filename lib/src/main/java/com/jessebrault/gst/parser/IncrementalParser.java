@@ -0,0 +1,413 @@
+package com.jessebrault.gst.parser;
+
+import com.jessebrault.gst.ast.AstNode;
+import com.jessebrault.gst.ast.AstUtil;
+import com.jessebrault.gst.ast.LeafNode;
+import com.jessebrault.gst.ast.TreeNode;
+import com.jessebrault.gst.ast.TreeNodeType;
+import com.jessebrault.gst.tokenizer.TokenBuffer;
+import com.jessebrault.gst.tokenizer.Tokenizer;
+import com.jessebrault.gst.tokenizer.TokenizerState;
+import com.jessebrault.gst.util.Diagnostic;
+import com.jessebrault.gst.util.TextEdit;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Parses a template again after a TextEdit, reusing the tokens and the top-level subtrees of the
+ * previous Snapshot which the edit cannot have changed, so that only the tokens around the edit are
+ * tokenized and parsed again. Subtrees after the edit are not copied to move their offsets; the
+ * Snapshot instead records how far each reused run of subtrees has moved, see getChildOffset().
+ *
+ * Requires a Parser which, like the StandardGstParser, produces a root whose children each depend
+ * only on their own tokens, and where a child without diagnostics does not look at the token after
+ * it. Children with diagnostics are reused as well, except next to the edit: if the last reused
+ * child before the edit has diagnostics it is parsed again, and if the last child parsed again has
+ * diagnostics, more of the following children are parsed with it, since it may only have run out of
+ * tokens at the end of the range. Diagnostics on the root itself still cause a full parse.
+ */
+public final class IncrementalParser {
+
+    /**
+     * Neighbouring runs with fewer children than this are joined by moving their children, so
+     * that the number of runs stays at most about twice the number of children over this.
+     */
+    private static final int minRunSize = 32;
+
+    /**
+     * Children [from, to) of a list, whose offsets are delta characters off.
+     */
+    private static final class Run {
+
+        private final List<AstNode> children;
+        private final int from;
+        private final int to;
+        private final int delta;
+
+        private Run(List<AstNode> children, int from, int to, int delta) {
+            this.children = children;
+            this.from = from;
+            this.to = to;
+            this.delta = delta;
+        }
+
+        private int size() {
+            return this.to - this.from;
+        }
+
+        @Override
+        public String toString() {
+            return "IncrementalParser.Run(from: " + this.from + ", to: " + this.to + ", delta: " + this.delta + ")";
+        }
+
+    }
+
+    public static final class Snapshot {
+
+        private final TokenBuffer tokens;
+        private final Collection<Diagnostic> rootDiagnostics;
+        private final TreeNodeType rootType;
+        private final List<Run> runs;
+        // index of the first child of each run
+        private final int[] runStarts;
+        private final int childCount;
+        private final int parsedTokenCount;
+
+        private @Nullable TreeNode root;
+        private @Nullable Boolean hasDiagnostics;
+
+        private Snapshot(
+                TokenBuffer tokens,
+                Collection<Diagnostic> rootDiagnostics,
+                TreeNodeType rootType,
+                List<Run> runs,
+                int parsedTokenCount
+        ) {
+            this.tokens = tokens;
+            this.rootDiagnostics = rootDiagnostics;
+            this.rootType = rootType;
+            this.runs = runs;
+            this.runStarts = new int[runs.size()];
+            int childCount = 0;
+            for (int i = 0; i < runs.size(); i++) {
+                this.runStarts[i] = childCount;
+                childCount += runs.get(i).size();
+            }
+            this.childCount = childCount;
+            this.parsedTokenCount = parsedTokenCount;
+        }
+
+        private Snapshot(TokenBuffer tokens, TreeNode root) {
+            this(
+                    tokens,
+                    root.getDiagnostics(),
+                    root.getType(),
+                    root.getChildren().isEmpty()
+                            ? List.of()
+                            : List.of(new Run(root.getChildren(), 0, root.getChildren().size(), 0)),
+                    tokens.size()
+            );
+            this.root = root;
+        }
+
+        public CharSequence getInput() {
+            return this.tokens.getInput();
+        }
+
+        public TokenBuffer getTokens() {
+            return this.tokens;
+        }
+
+        /**
+         * Builds the root on the first call, moving each child by its offset, so the first call takes
+         * time proportional to the whole template.
+         */
+        public TreeNode getRoot() {
+            if (this.root == null) {
+                final List<AstNode> children = new ArrayList<>(this.childCount);
+                for (final Run run : this.runs) {
+                    for (int i = run.from; i < run.to; i++) {
+                        children.add(move(run.children.get(i), run.delta));
+                    }
+                }
+                this.root = new TreeNode(this.rootDiagnostics, this.rootType, children);
+            }
+            return this.root;
+        }
+
+        public int getChildCount() {
+            return this.childCount;
+        }
+
+        /**
+         * @return the child at index of the root, as parsed for an earlier Snapshot if it was reused,
+         * so that its offsets are getChildOffset(index) characters off.
+         */
+        public AstNode getChild(int index) {
+            final int r = this.runOf(index);
+            final Run run = this.runs.get(r);
+            return run.children.get(run.from + index - this.runStarts[r]);
+        }
+
+        /**
+         * @return how many characters the child at index has moved since it was parsed.
+         */
+        public int getChildOffset(int index) {
+            return this.runs.get(this.runOf(index)).delta;
+        }
+
+        private int getChildStart(int index) {
+            return getStart(this.getChild(index)) + this.getChildOffset(index);
+        }
+
+        private int getChildEnd(int index) {
+            return getEnd(this.getChild(index)) + this.getChildOffset(index);
+        }
+
+        private int runOf(int index) {
+            if (index < 0 || index >= this.childCount) {
+                throw new IndexOutOfBoundsException("index: " + index + ", childCount: " + this.childCount);
+            }
+            int low = 0;
+            int high = this.runStarts.length - 1;
+            while (low < high) {
+                final int mid = (low + high + 1) >>> 1;
+                if (this.runStarts[mid] <= index) {
+                    low = mid;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * Appends children [from, to) of this Snapshot, moved by delta characters, by sharing its runs.
+         */
+        private void addRuns(List<Run> runs, int from, int to, int delta) {
+            if (from == to) {
+                return;
+            }
+            for (int i = this.runOf(from); i < this.runs.size() && this.runStarts[i] < to; i++) {
+                final Run run = this.runs.get(i);
+                final int runStart = this.runStarts[i];
+                runs.add(new Run(
+                        run.children,
+                        run.from + Math.max(from - runStart, 0),
+                        run.from + Math.min(to - runStart, run.size()),
+                        run.delta + delta
+                ));
+            }
+        }
+
+        /**
+         * Checks every child the first time, so takes time proportional to the whole template.
+         */
+        public boolean hasDiagnostics() {
+            if (this.hasDiagnostics == null) {
+                boolean hasDiagnostics = !this.rootDiagnostics.isEmpty();
+                for (int i = 0; i < this.runs.size() && !hasDiagnostics; i++) {
+                    final Run run = this.runs.get(i);
+                    for (int j = run.from; j < run.to && !hasDiagnostics; j++) {
+                        hasDiagnostics = AstUtil.hasDiagnostics(run.children.get(j));
+                    }
+                }
+                this.hasDiagnostics = hasDiagnostics;
+            }
+            return this.hasDiagnostics;
+        }
+
+        /**
+         * @return how many tokens were run through the parser to produce this Snapshot.
+         */
+        public int getParsedTokenCount() {
+            return this.parsedTokenCount;
+        }
+
+        @Override
+        public String toString() {
+            return "IncrementalParser.Snapshot(tokens: " + this.tokens
+                    + ", runs: " + this.runs.size()
+                    + ", parsedTokenCount: " + this.parsedTokenCount + ")";
+        }
+
+    }
+
+    private static int getStart(AstNode node) {
+        if (node instanceof LeafNode leafNode) {
+            return leafNode.getTokenStart();
+        }
+        final var children = ((TreeNode) node).getChildren();
+        if (children.isEmpty()) {
+            throw new IllegalStateException("node has no leaves: " + node);
+        }
+        return getStart(children.get(0));
+    }
+
+    private static int getEnd(AstNode node) {
+        if (node instanceof LeafNode leafNode) {
+            return leafNode.getTokenEnd();
+        }
+        final var children = ((TreeNode) node).getChildren();
+        if (children.isEmpty()) {
+            throw new IllegalStateException("node has no leaves: " + node);
+        }
+        return getEnd(children.get(children.size() - 1));
+    }
+
+    private static AstNode move(AstNode node, int delta) {
+        if (delta == 0) {
+            return node;
+        } else if (node instanceof LeafNode leafNode) {
+            return new LeafNode(
+                    leafNode.getDiagnostics(),
+                    leafNode.getTokenType(),
+                    leafNode.getTokenStart() + delta,
+                    leafNode.getTokenEnd() + delta
+            );
+        }
+        final var treeNode = (TreeNode) node;
+        final List<AstNode> children = new ArrayList<>(treeNode.getChildren().size());
+        for (final AstNode child : treeNode.getChildren()) {
+            children.add(move(child, delta));
+        }
+        return new TreeNode(treeNode.getDiagnostics(), treeNode.getType(), children);
+    }
+
+    /**
+     * Joins runs of small neighbouring runs into one, moving their children.
+     */
+    private static List<Run> join(List<Run> runs) {
+        final List<Run> joined = new ArrayList<>(runs.size());
+        int i = 0;
+        while (i < runs.size()) {
+            int j = i + 1;
+            while (j < runs.size() && runs.get(j - 1).size() < minRunSize && runs.get(j).size() < minRunSize) {
+                j++;
+            }
+            if (j == i + 1) {
+                joined.add(runs.get(i));
+            } else {
+                final List<AstNode> children = new ArrayList<>();
+                for (final Run run : runs.subList(i, j)) {
+                    for (int k = run.from; k < run.to; k++) {
+                        children.add(move(run.children.get(k), run.delta));
+                    }
+                }
+                joined.add(new Run(children, 0, children.size(), 0));
+            }
+            i = j;
+        }
+        return joined;
+    }
+
+    private final Parser parser;
+    private final Supplier<Tokenizer> tokenizerSupplier;
+
+    public IncrementalParser(Parser parser, Supplier<Tokenizer> tokenizerSupplier) {
+        this.parser = parser;
+        this.tokenizerSupplier = tokenizerSupplier;
+    }
+
+    public Snapshot parse(CharSequence input) {
+        final Tokenizer tokenizer = this.tokenizerSupplier.get();
+        return this.parse(TokenBuffer.of(tokenizer, input, 0, input.length(), TokenizerState.TEXT));
+    }
+
+    private Snapshot parse(TokenBuffer tokens) {
+        final var acc = new TreeNodeParserAccumulator();
+        this.parser.parse(tokens.provider(), acc);
+        return new Snapshot(tokens, acc.getResult());
+    }
+
+    /**
+     * @param newInput the input of previous with the edit applied.
+     */
+    public Snapshot reparse(Snapshot previous, TextEdit edit, CharSequence newInput) {
+        final TokenBuffer previousTokens = previous.getTokens();
+        final TokenBuffer tokens = previousTokens.relex(edit, newInput, this.tokenizerSupplier.get());
+        if (!previous.rootDiagnostics.isEmpty()) {
+            return this.parse(tokens);
+        }
+
+        final int childCount = previous.getChildCount();
+        final int delta = edit.getDelta();
+
+        // previous children made only of reused leading tokens
+        final int prefixSize = tokens.getReusedPrefixSize();
+        final int prefixEnd = prefixSize == 0 ? -1 : previousTokens.getEnd(prefixSize - 1);
+        int prefixChildren = 0;
+        int high = childCount;
+        while (prefixChildren < high) {
+            final int mid = (prefixChildren + high) >>> 1;
+            if (previous.getChildEnd(mid) <= prefixEnd) {
+                prefixChildren = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        // which may have ended where it did because of the token after it
+        while (prefixChildren > 0 && AstUtil.hasDiagnostics(previous.getChild(prefixChildren - 1))) {
+            prefixChildren--;
+        }
+
+        // previous children made only of reused trailing tokens
+        final int suffixSize = tokens.getReusedSuffixSize();
+        int suffixChildrenStart = childCount;
+        if (suffixSize > 0) {
+            final int suffixStart = previousTokens.getStart(previousTokens.size() - suffixSize);
+            int low = prefixChildren;
+            while (low < suffixChildrenStart) {
+                final int mid = (low + suffixChildrenStart) >>> 1;
+                if (previous.getChildStart(mid) < suffixStart) {
+                    low = mid + 1;
+                } else {
+                    suffixChildrenStart = mid;
+                }
+            }
+        }
+
+        final int from = prefixChildren == 0 ? 0 : tokens.indexOfStart(previous.getChildEnd(prefixChildren - 1));
+        int parsedTokenCount = 0;
+        int absorbed = 1;
+        TreeNode middle;
+        while (true) {
+            final int to = suffixChildrenStart == childCount
+                    ? tokens.size()
+                    : tokens.indexOfStart(previous.getChildStart(suffixChildrenStart) + delta);
+            final var acc = new TreeNodeParserAccumulator();
+            this.parser.parse(tokens.provider(from, to), acc);
+            middle = acc.getResult();
+            parsedTokenCount += to - from;
+            final List<AstNode> middleChildren = middle.getChildren();
+            if (to == tokens.size() || middle.getDiagnostics().isEmpty() && (middleChildren.isEmpty()
+                    || !AstUtil.hasDiagnostics(middleChildren.get(middleChildren.size() - 1)))) {
+                break;
+            }
+            // the last child may have run out of tokens, so parse it along with more of the suffix
+            suffixChildrenStart = Math.min(childCount, suffixChildrenStart + absorbed);
+            absorbed *= 2;
+        }
+        if (!middle.getDiagnostics().isEmpty()) {
+            return this.parse(tokens);
+        }
+
+        final List<Run> runs = new ArrayList<>();
+        previous.addRuns(runs, 0, prefixChildren, 0);
+        if (!middle.getChildren().isEmpty()) {
+            runs.add(new Run(middle.getChildren(), 0, middle.getChildren().size(), 0));
+        }
+        previous.addRuns(runs, suffixChildrenStart, childCount, delta);
+        return new Snapshot(tokens, middle.getDiagnostics(), previous.rootType, join(runs), parsedTokenCount);
+    }
+
+    @Override
+    public String toString() {
+        return "IncrementalParser(parser: " + this.parser + ")";
+    }
+
+}
@@ -10,14 +10,19 @@ import org.slf4j.Marker;
 import org.slf4j.MarkerFactory;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import static com.jessebrault.gst.ast.TreeNodeType.*;
 
 /**
- * May be extended.
+ * May be extended. All parse state lives in a per-call Context, so one instance may be shared
+ * by any number of threads; subclasses should keep it that way.
  */
 public class StandardGstParser implements Parser {
 
@@ -25,17 +30,60 @@ public class StandardGstParser implements Parser {
     private static final Marker enter = MarkerFactory.getMarker("ENTER");
     private static final Marker exit = MarkerFactory.getMarker("EXIT");
 
-    protected TokenProvider tokenProvider;
-    protected ParserAccumulator acc;
-    private List<TokenType> stashedTypes = new ArrayList<>();
+    protected static final Set<TokenType> scriptletBodyOrClose = Collections.unmodifiableSet(
+            EnumSet.of(TokenType.SCRIPTLET_BODY, TokenType.SCRIPTLET_CLOSE)
+    );
+    protected static final Set<TokenType> importBlockBodyOrClose = Collections.unmodifiableSet(
+            EnumSet.of(TokenType.IMPORT_BLOCK_BODY, TokenType.IMPORT_BLOCK_CLOSE)
+    );
+    protected static final Set<TokenType> dollarScriptletBodyOrClose = Collections.unmodifiableSet(
+            EnumSet.of(TokenType.DOLLAR_SCRIPTLET_BODY, TokenType.DOLLAR_SCRIPTLET_CLOSE)
+    );
+
+    private static final Map<TokenType, Set<TokenType>> singletonSets = new EnumMap<>(TokenType.class);
+
+    static {
+        for (final var type : TokenType.values()) {
+            singletonSets.put(type, Collections.unmodifiableSet(EnumSet.of(type)));
+        }
+    }
+
+    /**
+     * Holds the state of one call to parse(), so that a parser instance has no mutable state and
+     * may be shared between threads.
+     */
+    protected static final class Context {
+
+        private final TokenProvider tokenProvider;
+        private final ParserAccumulator acc;
+        private final List<TokenType> stashedTypes = new ArrayList<>();
+
+        private Context(TokenProvider tokenProvider, ParserAccumulator acc) {
+            this.tokenProvider = tokenProvider;
+            this.acc = acc;
+        }
+
+        public TokenProvider getTokenProvider() {
+            return this.tokenProvider;
+        }
+
+        public ParserAccumulator getAcc() {
+            return this.acc;
+        }
+
+        @Override
+        public String toString() {
+            return "StandardGstParser.Context(tokenProvider: " + this.tokenProvider
+                    + ", acc: " + this.acc
+                    + ", stashedTypes: " + this.stashedTypes + ")";
+        }
+
+    }
 
     @Override
     public final void parse(TokenProvider tokenProvider, ParserAccumulator acc) {
         logger.trace(enter, "tokenProvider: {}, acc: {}", tokenProvider, acc);
-        this.tokenProvider = tokenProvider;
-        this.acc = acc;
-        this.stashedTypes = new ArrayList<>();
-        this.gString();
+        this.gString(new Context(tokenProvider, acc));
         logger.trace(exit, "");
     }
 
@@ -66,17 +114,17 @@ public class StandardGstParser implements Parser {
         return getDiagnosticMessage("Ran out of tokens", expected);
     }
 
-    protected final void stash(TokenType type) {
-        this.stashedTypes.add(type);
+    protected final void stash(Context ctx, TokenType type) {
+        ctx.stashedTypes.add(type);
     }
 
-    protected final boolean isStashed(TokenType... expectedTypes) {
+    protected final boolean isStashed(Context ctx, TokenType... expectedTypes) {
         for (int i = 0; i < expectedTypes.length; i++) {
             final var expectedType = expectedTypes[i];
-            if (i >= this.stashedTypes.size()) {
+            if (i >= ctx.stashedTypes.size()) {
                 return false;
             }
-            final var stashedType = this.stashedTypes.get(i);
+            final var stashedType = ctx.stashedTypes.get(i);
             if (expectedType != stashedType) {
                 return false;
             }
@@ -84,44 +132,75 @@ public class StandardGstParser implements Parser {
         return true;
     }
 
-    protected final void clearStash() {
-        this.stashedTypes.clear();
+    protected final boolean isStashed(Context ctx, TokenType expectedType) {
+        return !ctx.stashedTypes.isEmpty() && ctx.stashedTypes.get(0) == expectedType;
     }
 
-    protected final Collection<Diagnostic> expectLeaf(boolean stash, TokenType... anyOf) {
-        final Collection<Diagnostic> diagnostics = new ArrayList<>();
-        final var currentType = this.tokenProvider.getCurrentType();
-        if (currentType != null && Arrays.asList(anyOf).contains(currentType)) {
+    protected final void clearStash(Context ctx) {
+        ctx.stashedTypes.clear();
+    }
+
+    /**
+     * Allocates only if the current token is not one of anyOf.
+     *
+     * @return the diagnostics, which are empty unless tokens ran out.
+     */
+    protected final Collection<Diagnostic> expectLeaf(Context ctx, boolean stash, Set<TokenType> anyOf) {
+        Collection<Diagnostic> diagnostics = List.of();
+        final var currentType = ctx.tokenProvider.getCurrentType();
+        if (currentType != null && anyOf.contains(currentType)) {
             if (stash) {
-                this.stash(currentType);
+                this.stash(ctx, currentType);
             }
-            this.acc.leaf(currentType, this.tokenProvider.getCurrentStart(), this.tokenProvider.getCurrentEnd());
+            ctx.acc.leaf(currentType, ctx.tokenProvider.getCurrentStart(), ctx.tokenProvider.getCurrentEnd());
         } else if (currentType != null) {
             final var diagnostic = new SimpleDiagnostic(
-                    getUnexpectedMessage(currentType, anyOf)
+                    getUnexpectedMessage(currentType, anyOf.toArray(new TokenType[0]))
             );
-            this.acc.leaf(
+            ctx.acc.leaf(
                     currentType,
-                    this.tokenProvider.getCurrentStart(),
-                    this.tokenProvider.getCurrentEnd(),
+                    ctx.tokenProvider.getCurrentStart(),
+                    ctx.tokenProvider.getCurrentEnd(),
                     List.of(diagnostic)
             );
         } else {
-            diagnostics.add(new SimpleDiagnostic(
-                    getNullTokenMessage(anyOf)
+            diagnostics = List.of(new SimpleDiagnostic(
+                    getNullTokenMessage(anyOf.toArray(new TokenType[0]))
             ));
         }
-        this.tokenProvider.advance();
+        ctx.tokenProvider.advance();
         return diagnostics;
     }
 
-    protected final Collection<Diagnostic> expectLeaf(TokenType... expectedTypes) {
-        return this.expectLeaf(false, expectedTypes);
+    protected final Collection<Diagnostic> expectLeaf(Context ctx, boolean stash, TokenType... anyOf) {
+        return this.expectLeaf(ctx, stash, anyOf.length == 0 ? Set.of() : EnumSet.copyOf(List.of(anyOf)));
+    }
+
+    protected final Collection<Diagnostic> expectLeaf(Context ctx, TokenType expectedType) {
+        return this.expectLeaf(ctx, false, singletonSets.get(expectedType));
+    }
+
+    protected final Collection<Diagnostic> expectLeaf(Context ctx, TokenType... expectedTypes) {
+        return this.expectLeaf(ctx, false, expectedTypes);
+    }
+
+    /**
+     * @return a if b is empty, otherwise a new Collection holding both.
+     */
+    protected static Collection<Diagnostic> concat(Collection<Diagnostic> a, Collection<Diagnostic> b) {
+        if (b.isEmpty()) {
+            return a;
+        } else if (a.isEmpty()) {
+            return b;
+        }
+        final Collection<Diagnostic> both = new ArrayList<>(a);
+        both.addAll(b);
+        return both;
     }
 
-    protected final Collection<Diagnostic> expectLeavesInOrder(TokenType... expectedTypes) {
+    protected final Collection<Diagnostic> expectLeavesInOrder(Context ctx, TokenType... expectedTypes) {
         for (final var expectedType : expectedTypes) {
-            final var diagnostics = this.expectLeaf(expectedType);
+            final var diagnostics = this.expectLeaf(ctx, expectedType);
             if (!diagnostics.isEmpty()) {
                 return diagnostics;
             }
@@ -129,19 +208,20 @@ public class StandardGstParser implements Parser {
         return List.of();
     }
 
-    protected void gString() {
-        this.acc.start(G_STRING);
-        final Collection<Diagnostic> gStringDiagnostics = new ArrayList<>();
+    protected void gString(Context ctx) {
+        ctx.acc.start(G_STRING);
+        // only allocated on error
+        Collection<Diagnostic> gStringDiagnostics = List.of();
         TokenType currentType;
-        while ((currentType = this.tokenProvider.getCurrentType()) != null) {
+        while ((currentType = ctx.tokenProvider.getCurrentType()) != null) {
             switch (currentType) {
-                case TEXT -> this.text();
-                case IMPORT_BLOCK_OPEN -> this.importBlock();
-                case BLOCK_SCRIPTLET_OPEN -> this.blockScriptlet();
-                case EXPRESSION_SCRIPTLET_OPEN -> this.expressionScriptlet();
-                case DOLLAR_REFERENCE_DOLLAR -> this.dollarReference();
-                case DOLLAR_SCRIPTLET_OPEN -> this.dollarScriptlet();
-                default -> gStringDiagnostics.add(new SimpleDiagnostic(
+                case TEXT -> this.text(ctx);
+                case IMPORT_BLOCK_OPEN -> this.importBlock(ctx);
+                case BLOCK_SCRIPTLET_OPEN -> this.blockScriptlet(ctx);
+                case EXPRESSION_SCRIPTLET_OPEN -> this.expressionScriptlet(ctx);
+                case DOLLAR_REFERENCE_DOLLAR -> this.dollarReference(ctx);
+                case DOLLAR_SCRIPTLET_OPEN -> this.dollarScriptlet(ctx);
+                default -> gStringDiagnostics = concat(gStringDiagnostics, List.of(new SimpleDiagnostic(
                         getUnexpectedMessage(
                                 currentType,
                                 TokenType.TEXT,
@@ -151,132 +231,124 @@ public class StandardGstParser implements Parser {
                                 TokenType.DOLLAR_REFERENCE_DOLLAR,
                                 TokenType.DOLLAR_SCRIPTLET_OPEN
                         )
-                ));
+                )));
             }
         }
-        this.acc.done(gStringDiagnostics);
+        ctx.acc.done(gStringDiagnostics);
     }
 
-    protected void text() {
-        this.expectLeaf(TokenType.TEXT);
+    protected void text(Context ctx) {
+        this.expectLeaf(ctx, TokenType.TEXT);
     }
 
     protected boolean isImportBlockPermitted() {
         return false;
     }
 
-    protected void importBlock() {
-        this.acc.start(IMPORT_BLOCK);
-        final Collection<Diagnostic> diagnostics = new ArrayList<>();
-
-        if (!this.isImportBlockPermitted()) {
-            diagnostics.add(
-                    new SimpleDiagnostic("ImportBlocks are not permitted by the StandardGStringParser.")
-            );
-        }
+    protected void importBlock(Context ctx) {
+        ctx.acc.start(IMPORT_BLOCK);
+        final Collection<Diagnostic> diagnostics = this.isImportBlockPermitted()
+                ? List.of()
+                : List.of(new SimpleDiagnostic("ImportBlocks are not permitted by the StandardGStringParser."));
 
         // open
-        final var openDiagnostics = this.expectLeaf(TokenType.IMPORT_BLOCK_OPEN);
+        final var openDiagnostics = this.expectLeaf(ctx, TokenType.IMPORT_BLOCK_OPEN);
         if (openDiagnostics.isEmpty()) {
             // body or close
-            final var bodyOrCloseDiagnostics = this.expectLeaf(
-                    true, TokenType.IMPORT_BLOCK_BODY, TokenType.IMPORT_BLOCK_CLOSE
-            );
+            final var bodyOrCloseDiagnostics = this.expectLeaf(ctx, true, importBlockBodyOrClose);
             if (bodyOrCloseDiagnostics.isEmpty()) {
-                if (this.isStashed(TokenType.IMPORT_BLOCK_CLOSE)) {
+                if (this.isStashed(ctx, TokenType.IMPORT_BLOCK_CLOSE)) {
                     // was closed
-                    this.clearStash();
-                    this.acc.done(diagnostics);
+                    this.clearStash(ctx);
+                    ctx.acc.done(diagnostics);
                 } else {
                     // had body
-                    this.clearStash();
-                    diagnostics.addAll(this.expectLeaf(TokenType.IMPORT_BLOCK_CLOSE));
-                    this.acc.done(diagnostics);
+                    this.clearStash(ctx);
+                    ctx.acc.done(concat(diagnostics, this.expectLeaf(ctx, TokenType.IMPORT_BLOCK_CLOSE)));
                 }
             } else {
-                this.clearStash();
-                diagnostics.addAll(bodyOrCloseDiagnostics);
-                this.acc.done(diagnostics);
+                this.clearStash(ctx);
+                ctx.acc.done(concat(diagnostics, bodyOrCloseDiagnostics));
             }
         } else {
-            diagnostics.addAll(openDiagnostics);
-            this.acc.done(diagnostics);
+            ctx.acc.done(concat(diagnostics, openDiagnostics));
         }
     }
 
-    protected void blockScriptlet() {
-        this.acc.start(BLOCK_SCRIPTLET);
+    protected void blockScriptlet(Context ctx) {
+        ctx.acc.start(BLOCK_SCRIPTLET);
         // open
-        final var openDiagnostics = this.expectLeaf(TokenType.BLOCK_SCRIPTLET_OPEN);
+        final var openDiagnostics = this.expectLeaf(ctx, TokenType.BLOCK_SCRIPTLET_OPEN);
         if (openDiagnostics.isEmpty()) {
-            this.scriptletBodyAndClose();
+            this.scriptletBodyAndClose(ctx);
         } else {
-            this.acc.done(openDiagnostics);
+            ctx.acc.done(openDiagnostics);
         }
     }
 
-    protected void expressionScriptlet() {
-        this.acc.start(EXPRESSION_SCRIPTLET);
+    protected void expressionScriptlet(Context ctx) {
+        ctx.acc.start(EXPRESSION_SCRIPTLET);
         // open
-        final var openDiagnostics = this.expectLeaf(TokenType.EXPRESSION_SCRIPTLET_OPEN);
+        final var openDiagnostics = this.expectLeaf(ctx, TokenType.EXPRESSION_SCRIPTLET_OPEN);
         if (openDiagnostics.isEmpty()) {
-            this.scriptletBodyAndClose();
+            this.scriptletBodyAndClose(ctx);
         } else {
-            this.acc.done(openDiagnostics);
+            ctx.acc.done(openDiagnostics);
         }
     }
 
-    protected void scriptletBodyAndClose() {
+    protected void scriptletBodyAndClose(Context ctx) {
         // body or close
-        final var bodyOrCloseDiagnostics = this.expectLeaf(
-                true, TokenType.SCRIPTLET_BODY, TokenType.SCRIPTLET_CLOSE
-        );
+        final var bodyOrCloseDiagnostics = this.expectLeaf(ctx, true, scriptletBodyOrClose);
         if (bodyOrCloseDiagnostics.isEmpty()) {
-            if (this.isStashed(TokenType.SCRIPTLET_CLOSE)) {
+            if (this.isStashed(ctx, TokenType.SCRIPTLET_CLOSE)) {
                 // was closed
-                this.clearStash();
-                this.acc.done();
+                this.clearStash(ctx);
+                ctx.acc.done();
             } else {
                 // had body;
-                this.clearStash();
-                this.acc.done(this.expectLeaf(TokenType.SCRIPTLET_CLOSE));
+                this.clearStash(ctx);
+                ctx.acc.done(this.expectLeaf(ctx, TokenType.SCRIPTLET_CLOSE));
             }
         } else {
-            this.clearStash();
-            this.acc.done(bodyOrCloseDiagnostics);
+            this.clearStash(ctx);
+            ctx.acc.done(bodyOrCloseDiagnostics);
         }
     }
 
-    protected void dollarReference() {
-        this.acc.start(DOLLAR_REFERENCE);
-        this.acc.done(this.expectLeavesInOrder(TokenType.DOLLAR_REFERENCE_DOLLAR, TokenType.DOLLAR_REFERENCE_BODY));
+    protected void dollarReference(Context ctx) {
+        ctx.acc.start(DOLLAR_REFERENCE);
+        final var dollarDiagnostics = this.expectLeaf(ctx, TokenType.DOLLAR_REFERENCE_DOLLAR);
+        if (dollarDiagnostics.isEmpty()) {
+            ctx.acc.done(this.expectLeaf(ctx, TokenType.DOLLAR_REFERENCE_BODY));
+        } else {
+            ctx.acc.done(dollarDiagnostics);
+        }
     }
 
-    protected void dollarScriptlet() {
-        this.acc.start(DOLLAR_SCRIPTLET);
+    protected void dollarScriptlet(Context ctx) {
+        ctx.acc.start(DOLLAR_SCRIPTLET);
         // open
-        final var openDiagnostics = this.expectLeaf(TokenType.DOLLAR_SCRIPTLET_OPEN);
+        final var openDiagnostics = this.expectLeaf(ctx, TokenType.DOLLAR_SCRIPTLET_OPEN);
         if (openDiagnostics.isEmpty()) {
             // body or close
-            final var bodyOrCloseDiagnostics = this.expectLeaf(
-                    true, TokenType.DOLLAR_SCRIPTLET_BODY, TokenType.DOLLAR_SCRIPTLET_CLOSE
-            );
+            final var bodyOrCloseDiagnostics = this.expectLeaf(ctx, true, dollarScriptletBodyOrClose);
             if (bodyOrCloseDiagnostics.isEmpty()) {
-                if (this.isStashed(TokenType.DOLLAR_SCRIPTLET_CLOSE)) {
+                if (this.isStashed(ctx, TokenType.DOLLAR_SCRIPTLET_CLOSE)) {
                     // was closed
-                    this.clearStash();
-                    this.acc.done();
+                    this.clearStash(ctx);
+                    ctx.acc.done();
                 } else {
                     // had body
-                    this.clearStash();
-                    this.acc.done(this.expectLeaf(TokenType.DOLLAR_SCRIPTLET_CLOSE));
+                    this.clearStash(ctx);
+                    ctx.acc.done(this.expectLeaf(ctx, TokenType.DOLLAR_SCRIPTLET_CLOSE));
                 }
             } else {
-                this.clearStash();
-                this.acc.done(bodyOrCloseDiagnostics);
+                this.clearStash(ctx);
+                ctx.acc.done(bodyOrCloseDiagnostics);
             }
         } else {
-            this.acc.done(openDiagnostics);
+            ctx.acc.done(openDiagnostics);
         }
     }
 
@@ -0,0 +1,285 @@
+package com.jessebrault.gst.tokenizer;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A hand-written Tokenizer which scans the input character by character instead of trying a
+ * list of regular expressions per state. It produces exactly the same tokens as the
+ * FsmBasedTokenizer.
+ */
+public final class CharScanningTokenizer implements Tokenizer {
+
+    private static boolean isDollarReferenceLookahead(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_';
+    }
+
+    private static boolean isIdentifierStart(char c) {
+        return isDollarReferenceLookahead(c) || c == '$';
+    }
+
+    private static boolean isIdentifierPart(char c) {
+        return isIdentifierStart(c) || (c >= '0' && c <= '9');
+    }
+
+    private CharSequence currentInput;
+    private int inputStartIndex;
+    private int inputEndIndex;
+    private int currentIndex;
+    private TokenizerState state;
+    private TokenizerState currentTokenState;
+
+    private TokenType currentTokenType;
+    private int currentTokenStart;
+    private int currentTokenEnd;
+
+    private boolean done;
+
+    // Cached results of indexOf('$') and indexOf('<'); valid while currentIndex has not passed them.
+    private int nextDollar;
+    private int nextLessThan;
+
+    @Override
+    public void start(CharSequence input, int startIndex, int endIndex, TokenizerState initialState) {
+        this.done = false;
+        this.currentInput = input;
+        this.inputStartIndex = startIndex;
+        this.currentIndex = this.inputStartIndex;
+        this.inputEndIndex = endIndex;
+        this.state = initialState;
+        this.currentTokenType = null;
+        this.nextDollar = -1;
+        this.nextLessThan = -1;
+        this.pullToken();
+    }
+
+    @Override
+    public void reset() {
+        this.done = true;
+        this.currentInput = null;
+        this.state = null;
+        this.currentTokenState = null;
+        this.currentTokenType = null;
+    }
+
+    @Override
+    public CharSequence getCurrentInput() {
+        return this.currentInput;
+    }
+
+    @Override
+    public TokenizerState getCurrentTokenState() {
+        return this.currentTokenState;
+    }
+
+    @Override
+    public int getInputStartIndex() {
+        return this.inputStartIndex;
+    }
+
+    @Override
+    public int getInputEndIndex() {
+        return this.inputEndIndex;
+    }
+
+    @Override
+    public @Nullable TokenType getCurrentType() {
+        return this.done ? null : this.currentTokenType;
+    }
+
+    @Override
+    public int getCurrentStart() {
+        return this.currentTokenStart;
+    }
+
+    @Override
+    public int getCurrentEnd() {
+        return this.currentTokenEnd;
+    }
+
+    @Override
+    public void advance() {
+        if (this.currentTokenType == null) {
+            throw new IllegalStateException("cannot advance; this.currentTokenType is null");
+        }
+        this.currentIndex = this.currentTokenEnd;
+        this.pullToken();
+    }
+
+    private char charAt(int index) {
+        return this.currentInput.charAt(index);
+    }
+
+    private boolean isCharAt(int index, char c) {
+        return index < this.inputEndIndex && this.currentInput.charAt(index) == c;
+    }
+
+    private int indexOf(char c, int from) {
+        if (this.currentInput instanceof String s) {
+            final var index = s.indexOf(c, from);
+            return index == -1 || index > this.inputEndIndex ? this.inputEndIndex : index;
+        }
+        for (int i = from; i < this.inputEndIndex; i++) {
+            if (this.currentInput.charAt(i) == c) {
+                return i;
+            }
+        }
+        return this.inputEndIndex;
+    }
+
+    private int indexOfClose(int from) {
+        if (this.currentInput instanceof String s) {
+            final var index = s.indexOf("%>", from);
+            return index == -1 || index + 1 >= this.inputEndIndex ? this.inputEndIndex : index;
+        }
+        for (int i = from; i + 1 < this.inputEndIndex; i++) {
+            if (this.currentInput.charAt(i) == '%' && this.currentInput.charAt(i + 1) == '>') {
+                return i;
+            }
+        }
+        return this.inputEndIndex;
+    }
+
+    private boolean isTextBoundary(int index) {
+        final char c = this.charAt(index);
+        if (index + 1 >= this.inputEndIndex) {
+            return false;
+        }
+        final char next = this.charAt(index + 1);
+        if (c == '$') {
+            return next == '{' || isDollarReferenceLookahead(next);
+        } else {
+            return c == '<' && next == '%';
+        }
+    }
+
+    private int findTextEnd(int from) {
+        int index = from;
+        while (true) {
+            if (this.nextDollar < index) {
+                this.nextDollar = this.indexOf('$', index);
+            }
+            if (this.nextLessThan < index) {
+                this.nextLessThan = this.indexOf('<', index);
+            }
+            final int candidate = Math.min(this.nextDollar, this.nextLessThan);
+            if (candidate >= this.inputEndIndex || this.isTextBoundary(candidate)) {
+                return candidate;
+            }
+            index = candidate + 1;
+        }
+    }
+
+    private int findDollarReferenceBodyEnd(int from) {
+        int index = from + 1;
+        while (true) {
+            while (index < this.inputEndIndex && isIdentifierPart(this.charAt(index))) {
+                index++;
+            }
+            if (this.isCharAt(index, '.')
+                    && index + 1 < this.inputEndIndex
+                    && isIdentifierStart(this.charAt(index + 1))) {
+                index += 2;
+            } else {
+                return index;
+            }
+        }
+    }
+
+    private void createCurrentToken(TokenType type, int end, TokenizerState nextState) {
+        this.currentTokenType = type;
+        this.currentTokenStart = this.currentIndex;
+        this.currentTokenEnd = end;
+        this.state = nextState;
+    }
+
+    private void pullToken() {
+        this.currentTokenState = this.state;
+        final int index = Math.max(this.currentIndex, this.inputStartIndex);
+        if (index >= this.inputEndIndex) {
+            this.done = true;
+            return;
+        }
+        final char c = this.charAt(index);
+        switch (this.state) {
+            case TEXT -> {
+                if (!this.isTextBoundary(index)) {
+                    this.createCurrentToken(TokenType.TEXT, this.findTextEnd(index + 1), TokenizerState.TEXT);
+                } else if (c == '$' && this.charAt(index + 1) == '{') {
+                    this.createCurrentToken(
+                            TokenType.DOLLAR_SCRIPTLET_OPEN, index + 2, TokenizerState.DOLLAR_SCRIPTLET_BODY
+                    );
+                } else if (c == '$') {
+                    this.createCurrentToken(
+                            TokenType.DOLLAR_REFERENCE_DOLLAR, index + 1, TokenizerState.DOLLAR_REFERENCE_BODY
+                    );
+                } else if (this.isCharAt(index + 2, '=')) {
+                    this.createCurrentToken(
+                            TokenType.EXPRESSION_SCRIPTLET_OPEN, index + 3, TokenizerState.SCRIPTLET_BODY
+                    );
+                } else if (this.isCharAt(index + 2, '@')) {
+                    this.createCurrentToken(
+                            TokenType.IMPORT_BLOCK_OPEN, index + 3, TokenizerState.IMPORT_BLOCK_BODY
+                    );
+                } else {
+                    this.createCurrentToken(
+                            TokenType.BLOCK_SCRIPTLET_OPEN, index + 2, TokenizerState.SCRIPTLET_BODY
+                    );
+                }
+            }
+            case DOLLAR_REFERENCE_BODY -> {
+                if (isIdentifierStart(c)) {
+                    this.createCurrentToken(
+                            TokenType.DOLLAR_REFERENCE_BODY,
+                            this.findDollarReferenceBodyEnd(index),
+                            TokenizerState.TEXT
+                    );
+                } else {
+                    this.done = true;
+                }
+            }
+            case SCRIPTLET_BODY, SCRIPTLET_CLOSE -> {
+                if (c == '%' && this.isCharAt(index + 1, '>')) {
+                    this.createCurrentToken(TokenType.SCRIPTLET_CLOSE, index + 2, TokenizerState.TEXT);
+                } else if (this.state == TokenizerState.SCRIPTLET_BODY) {
+                    this.createCurrentToken(
+                            TokenType.SCRIPTLET_BODY, this.indexOfClose(index), TokenizerState.SCRIPTLET_CLOSE
+                    );
+                } else {
+                    this.done = true;
+                }
+            }
+            case IMPORT_BLOCK_BODY, IMPORT_BLOCK_CLOSE -> {
+                if (c == '%' && this.isCharAt(index + 1, '>')) {
+                    this.createCurrentToken(TokenType.IMPORT_BLOCK_CLOSE, index + 2, TokenizerState.TEXT);
+                } else if (this.state == TokenizerState.IMPORT_BLOCK_BODY) {
+                    this.createCurrentToken(
+                            TokenType.IMPORT_BLOCK_BODY,
+                            this.indexOfClose(index),
+                            TokenizerState.IMPORT_BLOCK_CLOSE
+                    );
+                } else {
+                    this.done = true;
+                }
+            }
+            case DOLLAR_SCRIPTLET_BODY, DOLLAR_SCRIPTLET_CLOSE -> {
+                if (c == '}') {
+                    this.createCurrentToken(TokenType.DOLLAR_SCRIPTLET_CLOSE, index + 1, TokenizerState.TEXT);
+                } else if (this.state == TokenizerState.DOLLAR_SCRIPTLET_BODY) {
+                    this.createCurrentToken(
+                            TokenType.DOLLAR_SCRIPTLET_BODY,
+                            DollarScriptletBodyScanner.findClose(this.currentInput, index, this.inputEndIndex),
+                            TokenizerState.DOLLAR_SCRIPTLET_CLOSE
+                    );
+                } else {
+                    this.done = true;
+                }
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "CharScanningTokenizer()";
+    }
+
+}
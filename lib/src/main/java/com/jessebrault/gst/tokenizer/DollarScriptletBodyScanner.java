@@ -0,0 +1,83 @@
+package com.jessebrault.gst.tokenizer;
+
+import java.util.Arrays;
+
+/**
+ * Finds the end of a dollar scriptlet body by balancing braces, skipping over GString and Java string
+ * literals and descending into GString closures (${...}). Nested closures are tracked on an explicit
+ * stack rather than by recursion, so that deeply nested input cannot overflow the call stack.
+ */
+final class DollarScriptletBodyScanner {
+
+    /**
+     * A quote preceded by a backslash does not close a string.
+     *
+     * @return the index of the '}' closing the Groovy code which starts at from, or end if there is none.
+     */
+    public static int findClose(CharSequence input, int from, int end) {
+        // the brace depth of the code at each level; level n + 1 is a closure in a GString at level n
+        int[] depths = new int[8];
+        int level = 0;
+        depths[0] = 1;
+        boolean inGString = false;
+        int index = from;
+        while (index < end) {
+            final char c = input.charAt(index);
+            if (inGString) {
+                if (c == '"' && input.charAt(index - 1) != '\\') {
+                    inGString = false;
+                    index++;
+                } else if (c == '$' && index + 1 < end && input.charAt(index + 1) == '{') {
+                    level++;
+                    if (level == depths.length) {
+                        depths = Arrays.copyOf(depths, level * 2);
+                    }
+                    depths[level] = 1;
+                    inGString = false;
+                    index += 2;
+                } else {
+                    index++;
+                }
+            } else {
+                switch (c) {
+                    case '{' -> {
+                        depths[level]++;
+                        index++;
+                    }
+                    case '}' -> {
+                        if (--depths[level] == 0) {
+                            if (level == 0) {
+                                return index;
+                            }
+                            level--;
+                            inGString = true;
+                        }
+                        index++;
+                    }
+                    case '"' -> {
+                        inGString = true;
+                        index++;
+                    }
+                    case '\'' -> index = skipJString(input, index + 1, end);
+                    default -> index++;
+                }
+            }
+        }
+        return end;
+    }
+
+    /**
+     * @return the index after the closing '\'', or end if there is none.
+     */
+    private static int skipJString(CharSequence input, int from, int end) {
+        for (int index = from; index < end; index++) {
+            if (input.charAt(index) == '\'' && input.charAt(index - 1) != '\\') {
+                return index + 1;
+            }
+        }
+        return end;
+    }
+
+    private DollarScriptletBodyScanner() {}
+
+}
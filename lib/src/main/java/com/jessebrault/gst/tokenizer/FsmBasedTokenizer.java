@@ -1,49 +1,36 @@
 package com.jessebrault.gst.tokenizer;
 
-import com.jessebrault.fsm.function.FunctionFsm;
-import com.jessebrault.fsm.function.FunctionFsmBuilder;
-import com.jessebrault.fsm.function.FunctionFsmBuilderImpl;
-import com.jessebrault.fsm.stackfunction.StackFunctionFsm;
-import com.jessebrault.fsm.stackfunction.StackFunctionFsmBuilder;
-import com.jessebrault.fsm.stackfunction.StackFunctionFsmBuilderImpl;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.Deque;
-import java.util.LinkedList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.function.Function;
-import java.util.function.Supplier;
-import java.util.function.UnaryOperator;
+import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import static com.jessebrault.gst.tokenizer.TokenizerState.*;
 
+/**
+ * The transition table is immutable and shared by all instances; an instance only holds the cursor
+ * and its own reusable regex matchers. Instances may be reused for any number of inputs via start()
+ * and reset(), but are not thread-safe.
+ */
 public final class FsmBasedTokenizer implements Tokenizer {
 
-    private interface FsmFunction extends Function<CharSequence, Integer> {
-        FsmFunction filter(UnaryOperator<Integer> filter);
-    }
-
-    private static abstract class AbstractFsmFunction implements FsmFunction {
+    private static abstract class FsmFunction {
 
         private final String name;
 
-        public AbstractFsmFunction(String name) {
+        public FsmFunction(String name) {
             this.name = name;
         }
 
-        @Override
-        public final FsmFunction filter(UnaryOperator<Integer> filter) {
-            return new AbstractFsmFunction(this.name) {
-
-                @Override
-                public Integer apply(CharSequence charSequence) {
-                    return filter.apply(AbstractFsmFunction.this.apply(charSequence));
-                }
-
-            };
-        }
+        /**
+         * @return the length of the match at start, or -1 if there is none.
+         */
+        public abstract int apply(FsmBasedTokenizer tokenizer, int start, int end);
 
         @Override
         public String toString() {
@@ -52,19 +39,27 @@ public final class FsmBasedTokenizer implements Tokenizer {
 
     }
 
-    private static final class PatternMatcher extends AbstractFsmFunction {
+    private static final class PatternMatcher extends FsmFunction {
 
         private final Pattern pattern;
+        private final int index;
 
-        public PatternMatcher(String name, String regex) {
+        /**
+         * @param index the index of this in patternMatchers, and so of its Matcher in matchers.
+         */
+        public PatternMatcher(int index, String name, String regex) {
             super(name);
             this.pattern = Pattern.compile(regex);
+            this.index = index;
         }
 
         @Override
-        public Integer apply(CharSequence input) {
-            final var m = this.pattern.matcher(input);
-            return m.find() ? m.group().length() : null;
+        public int apply(FsmBasedTokenizer tokenizer, int start, int end) {
+            // All patterns are anchored at the start of the region, so only try a match there
+            // (find() would retry at every later index) and avoid copying the matched group.
+            final Matcher m = tokenizer.getMatcher(this);
+            m.region(start, end);
+            return m.lookingAt() ? m.end() - start : -1;
         }
 
         @Override
@@ -85,267 +80,176 @@ public final class FsmBasedTokenizer implements Tokenizer {
 
     }
 
-    private static final class DollarScriptletBodyMatcher extends AbstractFsmFunction {
-
-        private static final FsmFunction dollarScriptletText = new PatternMatcher(
-                "dollarScriptletText",
-                "^[\\w\\W&&[^{}\"']]+"
-        );
-        private static final FsmFunction leftBrace = new PatternMatcher(
-                "leftBrace",
-                "^\\{"
-        );
-        private static final FsmFunction rightBrace = new PatternMatcher(
-                "rightBrace",
-                "^}"
-        );
-        private static final FsmFunction doubleQuote = new PatternMatcher(
-                "doubleQuote",
-                "^\""
-        );
-        private static final FsmFunction singleQuote = new PatternMatcher(
-                "singleQuote",
-                "^'"
-        );
-        private static final FsmFunction gStringText = new PatternMatcher(
-                "gStringText",
-                "^(?:[\\w\\W&&[^$\\\"]]|\\$(?!\\{)|(?<=\\\\)\\\")+"
-        );
-        private static final FsmFunction jStringText = new PatternMatcher(
-                "jStringText",
-                "^(?:[\\w\\W&&[^']]|(?<=\\\\)')+"
-        );
-        private static final FsmFunction gStringClosureOpen = new PatternMatcher(
-                "gStringClosureOpen",
-                "^\\$\\{"
-        );
-
-        private enum State {
-            ROOT,
-            INNER,
-            IN_G_STRING,
-            IN_J_STRING,
-            DONE
-        }
-
-        private static StackFunctionFsmBuilder<CharSequence, State, Integer> getFsmBuilder() {
-            return new StackFunctionFsmBuilderImpl<>();
-        }
-
-        private static StackFunctionFsm<CharSequence, State, Integer> getFsm(AtomicInteger lengthCounter) {
-            final Deque<AtomicInteger> counterStack = new LinkedList<>();
-            final Supplier<AtomicInteger> currentCounterSupplier = () -> {
-                final var currentCounter = counterStack.peek();
-                if (currentCounter == null) {
-                    throw new IllegalStateException("currentCounter is null");
-                }
-                return currentCounter;
-            };
-
-            final var nonFinalRightBrace = rightBrace.filter(length ->
-                    currentCounterSupplier.get().get() > 1 ? length : null
-            );
-
-            final var finalRightBrace = rightBrace.filter(length ->
-                    currentCounterSupplier.get().get() == 1 ? length : null
-            );
-
-            // init counterStack
-            final var rootCounter = new AtomicInteger();
-            rootCounter.set(1);
-            counterStack.push(rootCounter);
-
-            return getFsmBuilder()
-
-                    .setInitialState(State.ROOT)
-
-                    .whileIn(State.ROOT, sc -> {
-                        sc.on(dollarScriptletText).exec(lengthCounter::addAndGet);
-                        sc.on(leftBrace).exec(length -> {
-                            lengthCounter.addAndGet(length);
-                            if (counterStack.size() != 1) {
-                                throw new IllegalStateException("counterStack.size() is " + counterStack.size());
-                            }
-                            final var currentCount = currentCounterSupplier.get().incrementAndGet();
-                            if (currentCount <= 1) {
-                                throw new IllegalStateException("currentCount is " + currentCount);
-                            }
-                        });
-                        sc.on(nonFinalRightBrace).exec(length -> {
-                            lengthCounter.addAndGet(length);
-                            if (counterStack.size() != 1) {
-                                throw new IllegalStateException("counterStack.size() is " + counterStack.size());
-                            }
-                            final var currentCount = currentCounterSupplier.get().decrementAndGet();
-                            if (currentCount < 1) {
-                                throw new IllegalStateException("currentCount is " + currentCount);
-                            }
-                        });
-                        // shift
-                        sc.on(finalRightBrace).shiftTo(State.DONE).exec(length -> {
-                            // DO NOT ADD THE LENGTH:
-                            // the final "}" is accounted for in the outer fsm.
-                            final var finalCount = currentCounterSupplier.get().decrementAndGet();
-                            if (finalCount != 0) {
-                                throw new IllegalStateException("finalCount is " + finalCount);
-                            }
-                        });
-                        sc.on(doubleQuote).pushState(State.IN_G_STRING).exec(lengthCounter::addAndGet);
-                        sc.on(singleQuote).pushState(State.IN_J_STRING).exec(lengthCounter::addAndGet);
-                        sc.onNoMatch().shiftTo(State.DONE);
-                    })
-
-                    .whileIn(State.INNER, sc -> {
-                        sc.on(dollarScriptletText).exec(lengthCounter::addAndGet);
-                        sc.on(leftBrace).exec(length -> {
-                            lengthCounter.addAndGet(length);
-                            final var currentCount = currentCounterSupplier.get().incrementAndGet();
-                            if (currentCount <= 1) {
-                                throw new IllegalStateException("currentCount is " + currentCount);
-                            }
-                        });
-                        sc.on(nonFinalRightBrace).exec(length -> {
-                            lengthCounter.addAndGet(length);
-                            final var currentCount = currentCounterSupplier.get().decrementAndGet();
-                            if (currentCount < 1) {
-                                throw new IllegalStateException("currentCount is " + currentCount);
-                            }
-                        });
-                        // pop
-                        sc.on(finalRightBrace).popState().exec(length -> {
-                            lengthCounter.addAndGet(length);
-                            final var finalCount = currentCounterSupplier.get().decrementAndGet();
-                            if (finalCount != 0) {
-                                throw new IllegalStateException("finalCount is " + finalCount);
-                            }
-                            counterStack.pop();
-                            if (counterStack.size() == 0) {
-                                throw new IllegalStateException("counterStack.size() is 0");
-                            }
-                        });
-                        sc.on(doubleQuote).pushState(State.IN_G_STRING).exec(lengthCounter::addAndGet);
-                        sc.on(singleQuote).pushState(State.IN_J_STRING).exec(lengthCounter::addAndGet);
-                        sc.onNoMatch().shiftTo(State.DONE);
-                    })
-
-                    .whileIn(State.IN_G_STRING, sc -> {
-                        sc.on(gStringText).exec(lengthCounter::addAndGet);
-                        sc.on(doubleQuote).popState().exec(lengthCounter::addAndGet);
-                        sc.on(gStringClosureOpen).pushState(State.INNER).exec(length -> {
-                            lengthCounter.addAndGet(length);
-                            counterStack.push(new AtomicInteger());
-                            currentCounterSupplier.get().incrementAndGet();
-                        });
-                        sc.onNoMatch().shiftTo(State.DONE);
-                    })
-
-                    .whileIn(State.IN_J_STRING, sc -> {
-                        sc.on(jStringText).exec(lengthCounter::addAndGet);
-                        sc.on(singleQuote).popState().exec(lengthCounter::addAndGet);
-                        sc.onNoMatch().shiftTo(State.DONE);
-                    })
-
-                    .build();
-        }
+    private static final class DollarScriptletBodyMatcher extends FsmFunction {
 
         public DollarScriptletBodyMatcher() {
             super("dollarScriptletBodyMatcher");
         }
 
         @Override
-        public Integer apply(final CharSequence input) {
-            final var lengthCounter = new AtomicInteger();
-            final var fsm = getFsm(lengthCounter);
-            CharSequence remaining = input;
-            while (remaining.length() > 0) {
-                final var outputLength = fsm.apply(remaining);
-                if (outputLength == null) {
-                    throw new IllegalStateException("outputLength is null");
-                }
-                if (fsm.getCurrentState() == State.DONE) {
-                    break;
-                } else {
-                    remaining = remaining.subSequence(outputLength, remaining.length());
-                }
-            }
-            final var length = lengthCounter.get();
-            if (length > 0) {
-                return length;
-            } else {
-                return null;
-            }
+        public int apply(FsmBasedTokenizer tokenizer, int start, int end) {
+            // the final "}" is not part of the body; it is matched by the outer fsm.
+            final var length = DollarScriptletBodyScanner.findClose(tokenizer.currentInput, start, end) - start;
+            return length > 0 ? length : -1;
         }
 
     }
 
+    private static final class Transition {
+
+        private final FsmFunction function;
+        private final TokenType tokenType;
+        private final TokenizerState nextState;
+
+        public Transition(FsmFunction function, TokenType tokenType, TokenizerState nextState) {
+            this.function = function;
+            this.tokenType = tokenType;
+            this.nextState = nextState;
+        }
+
+    }
+
+    private static Transition on(FsmFunction function, TokenType tokenType, TokenizerState nextState) {
+        return new Transition(function, tokenType, nextState);
+    }
+
     private static final FsmFunction text = new PatternMatcher(
+            0,
             "text",
-            "^(?:[\\w\\W&&[^\\$<]]|(?:\\$(?![{a-zA-Z_]))|(?:<(?!%)))+"
+            "^(?:[\\w\\W&&[^\\$<]]|(?:\\$(?![{a-zA-Z_]))|(?:<(?!%)))++"
     );
     private static final FsmFunction dollarReferenceDollar = new PatternMatcher(
+            1,
             "dollarReferenceDollar",
             "^\\$(?=[a-zA-Z_$])"
     );
     private static final FsmFunction dollarReferenceBody = new PatternMatcher(
+            2,
             "dollarReferenceBody",
             "^[a-zA-Z_$][a-zA-Z0-9_$]*(?:\\.[a-zA-Z_$][a-zA-Z0-9_$]*)*"
     );
 
     private static final FsmFunction blockScriptletOpen = new PatternMatcher(
+            3,
             "blockScriptletOpen",
             "^<%(?![=@])"
     );
     private static final FsmFunction expressionScriptletOpen = new PatternMatcher(
+            4,
             "expressionScriptletOpen",
             "^<%="
     );
 
     private static final FsmFunction scriptletBody = new PatternMatcher(
+            5,
             "scriptletBody",
-            "^(?:[\\w\\W&&[^%]]|(?:%(?!>)))+"
+            "^(?:[\\w\\W&&[^%]]|(?:%(?!>)))++"
     );
 
     private static final FsmFunction scriptletClose = new PatternMatcher(
+            6,
             "scriptletClose",
             "^%>"
     );
 
     private static final FsmFunction importBlockOpen = new PatternMatcher(
+            7,
             "importBlockOpen",
             "^<%@"
     );
     private static final FsmFunction importBlockBody = new PatternMatcher(
+            8,
             "importBlockBody",
-            "^(?:[\\w\\W&&[^%]]|(?:%(?!>)))+"
+            "^(?:[\\w\\W&&[^%]]|(?:%(?!>)))++"
     );
     private static final FsmFunction importBlockClose = new PatternMatcher(
+            9,
             "importBlockClose",
             "^%>"
     );
 
     private static final FsmFunction dollarScriptletOpen = new PatternMatcher(
+            10,
             "dollarScriptletOpen",
             "^\\$\\{"
     );
     private static final FsmFunction dollarScriptletBody = new DollarScriptletBodyMatcher();
     private static final FsmFunction dollarScriptletClose = new PatternMatcher(
+            11,
             "dollarScriptletClose",
             "^}"
     );
 
-    private FunctionFsm<CharSequence, TokenizerState, Integer> fsm;
+    // in the order of their indices
+    private static final List<FsmFunction> patternMatchers = List.of(
+            text,
+            dollarReferenceDollar,
+            dollarReferenceBody,
+            blockScriptletOpen,
+            expressionScriptletOpen,
+            scriptletBody,
+            scriptletClose,
+            importBlockOpen,
+            importBlockBody,
+            importBlockClose,
+            dollarScriptletOpen,
+            dollarScriptletClose
+    );
+
+    /**
+     * For each state, the transitions to try in order. If none match, tokenizing is done.
+     */
+    private static final Map<TokenizerState, List<Transition>> transitions = Collections.unmodifiableMap(
+            new EnumMap<>(Map.of(
+                    TEXT, List.of(
+                            on(text, TokenType.TEXT, TEXT),
+                            on(dollarReferenceDollar, TokenType.DOLLAR_REFERENCE_DOLLAR, DOLLAR_REFERENCE_BODY),
+                            on(blockScriptletOpen, TokenType.BLOCK_SCRIPTLET_OPEN, SCRIPTLET_BODY),
+                            on(expressionScriptletOpen, TokenType.EXPRESSION_SCRIPTLET_OPEN, SCRIPTLET_BODY),
+                            on(importBlockOpen, TokenType.IMPORT_BLOCK_OPEN, IMPORT_BLOCK_BODY),
+                            on(dollarScriptletOpen, TokenType.DOLLAR_SCRIPTLET_OPEN, DOLLAR_SCRIPTLET_BODY)
+                    ),
+                    DOLLAR_REFERENCE_BODY, List.of(
+                            on(dollarReferenceBody, TokenType.DOLLAR_REFERENCE_BODY, TEXT)
+                    ),
+                    SCRIPTLET_BODY, List.of(
+                            on(scriptletBody, TokenType.SCRIPTLET_BODY, SCRIPTLET_CLOSE),
+                            on(scriptletClose, TokenType.SCRIPTLET_CLOSE, TEXT)
+                    ),
+                    SCRIPTLET_CLOSE, List.of(
+                            on(scriptletClose, TokenType.SCRIPTLET_CLOSE, TEXT)
+                    ),
+                    IMPORT_BLOCK_BODY, List.of(
+                            on(importBlockBody, TokenType.IMPORT_BLOCK_BODY, IMPORT_BLOCK_CLOSE),
+                            on(importBlockClose, TokenType.IMPORT_BLOCK_CLOSE, TEXT)
+                    ),
+                    IMPORT_BLOCK_CLOSE, List.of(
+                            on(importBlockClose, TokenType.IMPORT_BLOCK_CLOSE, TEXT)
+                    ),
+                    DOLLAR_SCRIPTLET_BODY, List.of(
+                            on(dollarScriptletBody, TokenType.DOLLAR_SCRIPTLET_BODY, DOLLAR_SCRIPTLET_CLOSE),
+                            on(dollarScriptletClose, TokenType.DOLLAR_SCRIPTLET_CLOSE, TEXT)
+                    ),
+                    DOLLAR_SCRIPTLET_CLOSE, List.of(
+                            on(dollarScriptletClose, TokenType.DOLLAR_SCRIPTLET_CLOSE, TEXT)
+                    )
+            ))
+    );
+
+    private final Matcher[] matchers = new Matcher[patternMatchers.size()];
 
     private CharSequence currentInput;
     private int inputStartIndex;
     private int inputEndIndex;
     private int currentIndex;
+    private TokenizerState state;
     private TokenizerState currentTokenState;
 
     private TokenType currentTokenType;
     private int currentTokenStart;
     private int currentTokenEnd;
 
-    private boolean done;
+    private boolean done = true;
 
     @Override
     public void start(CharSequence input, int startIndex, int endIndex, TokenizerState initialState) {
@@ -354,10 +258,30 @@ public final class FsmBasedTokenizer implements Tokenizer {
         this.inputStartIndex = startIndex;
         this.currentIndex = this.inputStartIndex;
         this.inputEndIndex = endIndex;
-        this.initFsm(initialState);
+        this.state = initialState;
+        this.currentTokenType = null;
+        for (final Matcher matcher : this.matchers) {
+            if (matcher != null) {
+                matcher.reset(input);
+            }
+        }
         this.pullToken();
     }
 
+    @Override
+    public void reset() {
+        this.done = true;
+        this.currentInput = null;
+        this.state = null;
+        this.currentTokenState = null;
+        this.currentTokenType = null;
+        for (final Matcher matcher : this.matchers) {
+            if (matcher != null) {
+                matcher.reset("");
+            }
+        }
+    }
+
     @Override
     public CharSequence getCurrentInput() {
         return this.currentInput;
@@ -402,110 +326,29 @@ public final class FsmBasedTokenizer implements Tokenizer {
         this.pullToken();
     }
 
-    private void initFsm(TokenizerState initialState) {
-        final FunctionFsmBuilder<CharSequence, TokenizerState, Integer> b = new FunctionFsmBuilderImpl<>();
-        this.fsm = b
-                .setInitialState(initialState)
-
-                .whileIn(TEXT, sc -> {
-                    sc.on(text).exec(length -> this.createCurrentToken(TokenType.TEXT, length));
-                    sc.on(dollarReferenceDollar).shiftTo(DOLLAR_REFERENCE_BODY).exec(length ->
-                            this.createCurrentToken(TokenType.DOLLAR_REFERENCE_DOLLAR, length)
-                    );
-                    sc.on(blockScriptletOpen).shiftTo(SCRIPTLET_BODY).exec(length ->
-                            this.createCurrentToken(TokenType.BLOCK_SCRIPTLET_OPEN, length)
-                    );
-                    sc.on(expressionScriptletOpen).shiftTo(SCRIPTLET_BODY).exec(length ->
-                            this.createCurrentToken(TokenType.EXPRESSION_SCRIPTLET_OPEN, length)
-                    );
-                    sc.on(importBlockOpen).shiftTo(IMPORT_BLOCK_BODY).exec(length ->
-                            this.createCurrentToken(TokenType.IMPORT_BLOCK_OPEN, length)
-                    );
-                    sc.on(dollarScriptletOpen).shiftTo(DOLLAR_SCRIPTLET_BODY).exec(length ->
-                            this.createCurrentToken(TokenType.DOLLAR_SCRIPTLET_OPEN, length)
-                    );
-                    sc.onNoMatch().exec(this::done);
-                })
-
-                .whileIn(DOLLAR_REFERENCE_BODY, sc -> {
-                    sc.on(dollarReferenceBody).shiftTo(TEXT).exec(length ->
-                            this.createCurrentToken(TokenType.DOLLAR_REFERENCE_BODY, length)
-                    );
-                    sc.onNoMatch().exec(this::done);
-                })
-
-                .whileIn(SCRIPTLET_BODY, sc -> {
-                    sc.on(scriptletBody).shiftTo(SCRIPTLET_CLOSE).exec(length ->
-                            this.createCurrentToken(TokenType.SCRIPTLET_BODY, length)
-                    );
-                    sc.on(scriptletClose).shiftTo(TEXT).exec(length ->
-                            this.createCurrentToken(TokenType.SCRIPTLET_CLOSE, length)
-                    );
-                    sc.onNoMatch().exec(this::done);
-                })
-
-                .whileIn(SCRIPTLET_CLOSE, sc -> {
-                    sc.on(scriptletClose).shiftTo(TEXT).exec(length ->
-                            this.createCurrentToken(TokenType.SCRIPTLET_CLOSE, length)
-                    );
-                    sc.onNoMatch().exec(this::done);
-                })
-
-                .whileIn(IMPORT_BLOCK_BODY, sc -> {
-                    sc.on(importBlockBody).shiftTo(IMPORT_BLOCK_CLOSE).exec(length ->
-                            this.createCurrentToken(TokenType.IMPORT_BLOCK_BODY, length)
-                    );
-                    sc.on(importBlockClose).shiftTo(TEXT).exec(length ->
-                            this.createCurrentToken(TokenType.IMPORT_BLOCK_CLOSE, length)
-                    );
-                    sc.onNoMatch().exec(this::done);
-                })
-
-                .whileIn(IMPORT_BLOCK_CLOSE, sc -> {
-                    sc.on(importBlockClose).shiftTo(TEXT).exec(length ->
-                            this.createCurrentToken(TokenType.IMPORT_BLOCK_CLOSE, length)
-                    );
-                    sc.onNoMatch().exec(this::done);
-                })
-
-                .whileIn(DOLLAR_SCRIPTLET_BODY, sc -> {
-                    sc.on(dollarScriptletBody).shiftTo(DOLLAR_SCRIPTLET_CLOSE).exec(length ->
-                            this.createCurrentToken(TokenType.DOLLAR_SCRIPTLET_BODY, length)
-                    );
-                    sc.on(dollarScriptletClose).shiftTo(TEXT).exec(length ->
-                            this.createCurrentToken(TokenType.DOLLAR_SCRIPTLET_CLOSE, length)
-                    );
-                    sc.onNoMatch().exec(this::done);
-                })
-
-                .whileIn(DOLLAR_SCRIPTLET_CLOSE, sc -> {
-                    sc.on(dollarScriptletClose).shiftTo(TEXT).exec(length ->
-                            this.createCurrentToken(TokenType.DOLLAR_SCRIPTLET_CLOSE, length)
-                    );
-                    sc.onNoMatch().exec(this::done);
-                })
-
-                .build();
-    }
-
-    private void createCurrentToken(TokenType type, int length) {
-        this.currentTokenType = type;
-        this.currentTokenStart = this.currentIndex;
-        this.currentTokenEnd = this.currentIndex + length;
-    }
-
-    private void done(CharSequence input) {
-        this.done = true;
+    private Matcher getMatcher(PatternMatcher patternMatcher) {
+        Matcher matcher = this.matchers[patternMatcher.index];
+        if (matcher == null) {
+            matcher = patternMatcher.pattern.matcher(this.currentInput);
+            this.matchers[patternMatcher.index] = matcher;
+        }
+        return matcher;
     }
 
     private void pullToken() {
-        this.currentTokenState = this.fsm.getCurrentState();
-        this.fsm.apply(
-                this.currentInput.subSequence(
-                        Math.max(this.currentIndex, this.inputStartIndex),
-                        this.inputEndIndex
-                )
-        );
+        this.currentTokenState = this.state;
+        final int start = Math.max(this.currentIndex, this.inputStartIndex);
+        for (final Transition transition : transitions.get(this.state)) {
+            final int length = transition.function.apply(this, start, this.inputEndIndex);
+            if (length != -1) {
+                this.currentTokenType = transition.tokenType;
+                this.currentTokenStart = this.currentIndex;
+                this.currentTokenEnd = this.currentIndex + length;
+                this.state = transition.nextState;
+                return;
+            }
+        }
+        this.done = true;
     }
 
     @Override
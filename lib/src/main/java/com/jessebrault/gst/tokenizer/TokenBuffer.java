@@ -0,0 +1,495 @@
+package com.jessebrault.gst.tokenizer;
+
+import com.jessebrault.gst.util.TextEdit;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Holds all the tokens of one input in parallel int arrays, filled by a single tokenizer pass.
+ * The tokens may then be replayed any number of times via provider(), for example to parse the
+ * same template with different Parsers, without tokenizing again.
+ *
+ * The TokenizerState at the start of each token is recorded as well, so that after an edit the
+ * input can be tokenized again starting from the last unaffected token; see relex().
+ *
+ * The arrays are never changed once filled. A buffer is a list of segments, each a range of some
+ * arrays plus a number of characters to move the offsets in that range by, so that relex() shares
+ * the unchanged tokens of the previous buffer instead of copying them.
+ */
+public final class TokenBuffer {
+
+    private static final TokenType[] tokenTypes = TokenType.values();
+    private static final TokenizerState[] tokenizerStates = TokenizerState.values();
+    private static final int initialCapacity = 16;
+
+    /**
+     * The most characters past its end which a tokenizer looks at to decide where a token ends
+     * (e.g. "$a" or "<%" ending a TEXT token).
+     */
+    private static final int maxLookahead = 2;
+
+    /**
+     * Neighbouring segments with fewer tokens than this are copied into one by relex(), so that
+     * the number of segments stays at most about twice the size over this.
+     */
+    private static final int minSegmentSize = 64;
+
+    private static final class Segment {
+
+        private final int[] types;
+        private final int[] starts;
+        private final int[] ends;
+        private final int[] states;
+        private final int from;
+        private final int to;
+        private final int delta;
+
+        private Segment(int[] types, int[] starts, int[] ends, int[] states, int from, int to, int delta) {
+            this.types = types;
+            this.starts = starts;
+            this.ends = ends;
+            this.states = states;
+            this.from = from;
+            this.to = to;
+            this.delta = delta;
+        }
+
+        private int size() {
+            return this.to - this.from;
+        }
+
+        private Segment slice(int from, int to, int delta) {
+            if (from == this.from && to == this.to && delta == 0) {
+                return this;
+            }
+            return new Segment(
+                    this.types, this.starts, this.ends, this.states, from, to, this.delta + delta
+            );
+        }
+
+        @Override
+        public String toString() {
+            return "TokenBuffer.Segment(from: " + this.from + ", to: " + this.to + ", delta: " + this.delta + ")";
+        }
+
+    }
+
+    /**
+     * Drains the given Tokenizer, which must already be started, into a new TokenBuffer.
+     */
+    public static TokenBuffer of(Tokenizer tokenizer) {
+        final var buffer = new TokenBuffer(
+                tokenizer.getCurrentInput(),
+                tokenizer.getInputStartIndex(),
+                tokenizer.getInputEndIndex()
+        );
+        buffer.drain(tokenizer, 0, 0, null, 0);
+        buffer.finish();
+        return buffer;
+    }
+
+    public static TokenBuffer of(
+            Tokenizer tokenizer,
+            CharSequence input,
+            int startIndex,
+            int endIndex,
+            TokenizerState initialState
+    ) {
+        tokenizer.start(input, startIndex, endIndex, initialState);
+        return of(tokenizer);
+    }
+
+    private final CharSequence input;
+    private final int inputStartIndex;
+    private final int inputEndIndex;
+
+    private List<Segment> segments = new ArrayList<>();
+    // index of the first token of each segment, set by finish()
+    private int[] segmentStarts;
+    private int size;
+
+    // tokens added since the last segment was closed, which are [addedFrom, addedTo) of the arrays
+    private int[] types = new int[initialCapacity];
+    private int[] starts = new int[initialCapacity];
+    private int[] ends = new int[initialCapacity];
+    private int[] states = new int[initialCapacity];
+    private int addedFrom;
+    private int addedTo;
+
+    // the state the tokenizer was in when it ran out of tokens
+    private TokenizerState finalState;
+
+    private int reusedPrefixSize;
+    private int reusedSuffixSize;
+
+    private TokenBuffer(CharSequence input, int inputStartIndex, int inputEndIndex) {
+        this.input = input;
+        this.inputStartIndex = inputStartIndex;
+        this.inputEndIndex = inputEndIndex;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > this.types.length) {
+            final int newCapacity = Math.max(capacity, this.types.length * 2);
+            this.types = Arrays.copyOf(this.types, newCapacity);
+            this.starts = Arrays.copyOf(this.starts, newCapacity);
+            this.ends = Arrays.copyOf(this.ends, newCapacity);
+            this.states = Arrays.copyOf(this.states, newCapacity);
+        }
+    }
+
+    private void add(TokenType type, int start, int end, TokenizerState state) {
+        this.ensureCapacity(this.addedTo + 1);
+        this.types[this.addedTo] = type.ordinal();
+        this.starts[this.addedTo] = start;
+        this.ends[this.addedTo] = end;
+        this.states[this.addedTo] = state.ordinal();
+        this.addedTo++;
+        this.size++;
+    }
+
+    /**
+     * Ends the segment of the tokens added so far. Later tokens go in the same arrays after it,
+     * where the segment does not see them.
+     */
+    private void closeSegment() {
+        if (this.addedTo > this.addedFrom) {
+            this.segments.add(new Segment(
+                    this.types, this.starts, this.ends, this.states, this.addedFrom, this.addedTo, 0
+            ));
+            this.addedFrom = this.addedTo;
+        }
+    }
+
+    /**
+     * Appends tokens [from, to) of other, which must be finished, moved by delta characters,
+     * by sharing its segments.
+     */
+    private void addAll(TokenBuffer other, int from, int to, int delta) {
+        if (from == to) {
+            return;
+        }
+        this.closeSegment();
+        for (int i = other.segmentOf(from); i < other.segments.size() && other.segmentStarts[i] < to; i++) {
+            final Segment segment = other.segments.get(i);
+            final int segmentStart = other.segmentStarts[i];
+            this.segments.add(segment.slice(
+                    segment.from + Math.max(from - segmentStart, 0),
+                    segment.from + Math.min(to - segmentStart, segment.size()),
+                    delta
+            ));
+        }
+        this.size += to - from;
+    }
+
+    /**
+     * Closes the last segment, copies runs of small neighbouring segments into one, and indexes
+     * the segments.
+     */
+    private void finish() {
+        this.closeSegment();
+        final List<Segment> segments = new ArrayList<>(this.segments.size());
+        int i = 0;
+        while (i < this.segments.size()) {
+            int j = i + 1;
+            int count = this.segments.get(i).size();
+            while (j < this.segments.size()
+                    && this.segments.get(j - 1).size() < minSegmentSize
+                    && this.segments.get(j).size() < minSegmentSize) {
+                count += this.segments.get(j).size();
+                j++;
+            }
+            segments.add(j == i + 1 ? this.segments.get(i) : copy(this.segments.subList(i, j), count));
+            i = j;
+        }
+        this.segments = segments;
+        this.segmentStarts = new int[segments.size()];
+        int segmentStart = 0;
+        for (int s = 0; s < segments.size(); s++) {
+            this.segmentStarts[s] = segmentStart;
+            segmentStart += segments.get(s).size();
+        }
+    }
+
+    private static Segment copy(List<Segment> segments, int count) {
+        final int[] types = new int[count];
+        final int[] starts = new int[count];
+        final int[] ends = new int[count];
+        final int[] states = new int[count];
+        int size = 0;
+        for (final Segment segment : segments) {
+            final int segmentSize = segment.size();
+            System.arraycopy(segment.types, segment.from, types, size, segmentSize);
+            System.arraycopy(segment.states, segment.from, states, size, segmentSize);
+            for (int i = 0; i < segmentSize; i++) {
+                starts[size + i] = segment.starts[segment.from + i] + segment.delta;
+                ends[size + i] = segment.ends[segment.from + i] + segment.delta;
+            }
+            size += segmentSize;
+        }
+        return new Segment(types, starts, ends, states, 0, count, 0);
+    }
+
+    /**
+     * Adds tokens until the tokenizer is done. If previous is not null, stops as soon as a token
+     * at or after resyncFrom starts where a token of previous (moved by delta) started in the same
+     * state, and shares the rest of previous instead, since the input from there on is the same.
+     */
+    private void drain(
+            Tokenizer tokenizer,
+            int resyncFrom,
+            int delta,
+            @Nullable TokenBuffer previous,
+            int previousIndex
+    ) {
+        TokenType currentType;
+        while ((currentType = tokenizer.getCurrentType()) != null) {
+            final int start = tokenizer.getCurrentStart();
+            final TokenizerState state = tokenizer.getCurrentTokenState();
+            if (previous != null && start >= resyncFrom) {
+                final int previousStart = start - delta;
+                while (previousIndex < previous.size && previous.getStart(previousIndex) < previousStart) {
+                    previousIndex++;
+                }
+                if (previousIndex < previous.size
+                        && previous.getStart(previousIndex) == previousStart
+                        && previous.getState(previousIndex) == state) {
+                    this.addAll(previous, previousIndex, previous.size, delta);
+                    this.finalState = previous.finalState;
+                    this.reusedSuffixSize = previous.size - previousIndex;
+                    return;
+                }
+            }
+            this.add(currentType, start, tokenizer.getCurrentEnd(), state);
+            tokenizer.advance();
+        }
+        this.finalState = tokenizer.getCurrentTokenState();
+    }
+
+    /**
+     * Tokenizes newInput, which must be this buffer's input with the given edit applied. Tokens
+     * which end far enough before the edit are kept, and the given tokenizer is restarted at the
+     * first token which might have changed, in the state recorded for it. As soon as the tokenizer
+     * is past the edit and back in step with this buffer, the remaining tokens are shared, moved
+     * by the edit's delta, instead of tokenized again.
+     *
+     * Takes time proportional to the tokens around the edit plus the number of segments, but not
+     * to the size of the buffer.
+     *
+     * @return a new TokenBuffer for newInput; this buffer is not changed.
+     */
+    public TokenBuffer relex(TextEdit edit, CharSequence newInput, Tokenizer tokenizer) {
+        final int offset = edit.getOffset();
+        if (offset < this.inputStartIndex || offset + edit.getRemovedLength() > this.inputEndIndex) {
+            throw new IllegalArgumentException("edit is not within the input: " + edit);
+        }
+        final int delta = edit.getDelta();
+        final var result = new TokenBuffer(newInput, this.inputStartIndex, this.inputEndIndex + delta);
+
+        // first token which ends too close to the edit to be sure of it
+        int restart = 0;
+        int high = this.size;
+        while (restart < high) {
+            final int mid = (restart + high) >>> 1;
+            if (this.getEnd(mid) + maxLookahead <= offset) {
+                restart = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        result.addAll(this, 0, restart, 0);
+        result.reusedPrefixSize = restart;
+
+        final int restartIndex;
+        final TokenizerState restartState;
+        if (restart < this.size) {
+            restartIndex = this.getStart(restart);
+            restartState = this.getState(restart);
+        } else {
+            restartIndex = restart == 0 ? this.inputStartIndex : this.getEnd(restart - 1);
+            restartState = this.finalState;
+        }
+        tokenizer.start(newInput, restartIndex, result.inputEndIndex, restartState);
+        result.drain(tokenizer, offset + edit.getInsertedLength(), delta, this, restart);
+        result.finish();
+        return result;
+    }
+
+    public CharSequence getInput() {
+        return this.input;
+    }
+
+    public int getInputStartIndex() {
+        return this.inputStartIndex;
+    }
+
+    public int getInputEndIndex() {
+        return this.inputEndIndex;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public TokenType getType(int index) {
+        final int s = this.segmentOf(this.checkIndex(index));
+        final Segment segment = this.segments.get(s);
+        return tokenTypes[segment.types[segment.from + index - this.segmentStarts[s]]];
+    }
+
+    public int getStart(int index) {
+        final int s = this.segmentOf(this.checkIndex(index));
+        final Segment segment = this.segments.get(s);
+        return segment.starts[segment.from + index - this.segmentStarts[s]] + segment.delta;
+    }
+
+    public int getEnd(int index) {
+        final int s = this.segmentOf(this.checkIndex(index));
+        final Segment segment = this.segments.get(s);
+        return segment.ends[segment.from + index - this.segmentStarts[s]] + segment.delta;
+    }
+
+    /**
+     * @return the state the tokenizer was in at the start of the token.
+     */
+    public TokenizerState getState(int index) {
+        final int s = this.segmentOf(this.checkIndex(index));
+        final Segment segment = this.segments.get(s);
+        return tokenizerStates[segment.states[segment.from + index - this.segmentStarts[s]]];
+    }
+
+    /**
+     * @return the number of leading tokens reused from the previous buffer by relex(), or 0.
+     */
+    public int getReusedPrefixSize() {
+        return this.reusedPrefixSize;
+    }
+
+    /**
+     * @return the number of trailing tokens reused from the previous buffer by relex(), or 0.
+     */
+    public int getReusedSuffixSize() {
+        return this.reusedSuffixSize;
+    }
+
+    /**
+     * @return the index of the first token starting at or after offset, or size() if there is none.
+     */
+    public int indexOfStart(int offset) {
+        int low = 0;
+        int high = this.size;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (this.getStart(mid) < offset) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return the index of the segment holding the token at the given index, which must be valid.
+     */
+    private int segmentOf(int index) {
+        int low = 0;
+        int high = this.segmentStarts.length - 1;
+        while (low < high) {
+            final int mid = (low + high + 1) >>> 1;
+            if (this.segmentStarts[mid] <= index) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    private int checkIndex(int index) {
+        if (index < 0 || index >= this.size) {
+            throw new IndexOutOfBoundsException("index: " + index + ", size: " + this.size);
+        }
+        return index;
+    }
+
+    /**
+     * @return a new TokenProvider positioned at the first token of this buffer.
+     */
+    public TokenProvider provider() {
+        return new Provider(0, this.size);
+    }
+
+    /**
+     * @return a new TokenProvider over the tokens [from, to) of this buffer.
+     */
+    public TokenProvider provider(int from, int to) {
+        if (from < 0 || to > this.size || from > to) {
+            throw new IndexOutOfBoundsException("from: " + from + ", to: " + to + ", size: " + this.size);
+        }
+        return new Provider(from, to);
+    }
+
+    private final class Provider implements TokenProvider {
+
+        private final int to;
+        private int index;
+        private int segmentIndex;
+        // null if there are no tokens to provide
+        private Segment segment;
+        private int position;
+
+        private Provider(int from, int to) {
+            this.index = from;
+            this.to = to;
+            if (from < to) {
+                this.segmentIndex = TokenBuffer.this.segmentOf(from);
+                this.segment = TokenBuffer.this.segments.get(this.segmentIndex);
+                this.position = this.segment.from + from - TokenBuffer.this.segmentStarts[this.segmentIndex];
+            }
+        }
+
+        @Override
+        public @Nullable TokenType getCurrentType() {
+            return this.index < this.to ? tokenTypes[this.segment.types[this.position]] : null;
+        }
+
+        @Override
+        public int getCurrentStart() {
+            return this.index < this.to ? this.segment.starts[this.position] + this.segment.delta : 0;
+        }
+
+        @Override
+        public int getCurrentEnd() {
+            return this.index < this.to ? this.segment.ends[this.position] + this.segment.delta : 0;
+        }
+
+        @Override
+        public void advance() {
+            if (this.index < this.to) {
+                this.index++;
+                this.position++;
+                if (this.index < this.to && this.position == this.segment.to) {
+                    this.segmentIndex++;
+                    this.segment = TokenBuffer.this.segments.get(this.segmentIndex);
+                    this.position = this.segment.from;
+                }
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "TokenBuffer.Provider(index: " + this.index + ", to: " + this.to + ")";
+        }
+
+    }
+
+    @Override
+    public String toString() {
+        return "TokenBuffer(size: " + this.size + ", segments: " + this.segments.size() + ")";
+    }
+
+}
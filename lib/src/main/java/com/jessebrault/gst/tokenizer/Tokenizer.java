@@ -3,6 +3,12 @@ package com.jessebrault.gst.tokenizer;
 public interface Tokenizer extends TokenProvider {
     void start(CharSequence input, int startIndex, int endIndex, TokenizerState initialState);
 
+    /**
+     * Releases the current input so that this Tokenizer may be pooled and later started again. Does
+     * nothing by default.
+     */
+    default void reset() {}
+
     CharSequence getCurrentInput();
     TokenizerState getCurrentTokenState();
 
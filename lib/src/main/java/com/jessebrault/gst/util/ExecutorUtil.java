@@ -0,0 +1,36 @@
+package com.jessebrault.gst.util;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+
+public final class ExecutorUtil {
+
+    private static final class DefaultExecutorHolder {
+
+        private static final Executor defaultExecutor = createDefaultExecutor();
+
+        private static Executor createDefaultExecutor() {
+            // Executors.newVirtualThreadPerTaskExecutor() only exists on JDK 21+, and we compile for 17.
+            try {
+                final var factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+                return (ExecutorService) factory.invoke(null);
+            } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+                return ForkJoinPool.commonPool();
+            }
+        }
+
+    }
+
+    /**
+     * @return an Executor running each task on a new virtual thread if the JDK has them, or else
+     * the common ForkJoinPool.
+     */
+    public static Executor getDefaultExecutor() {
+        return DefaultExecutorHolder.defaultExecutor;
+    }
+
+    private ExecutorUtil() {}
+
+}
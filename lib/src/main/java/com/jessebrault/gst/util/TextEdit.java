@@ -0,0 +1,70 @@
+package com.jessebrault.gst.util;
+
+/**
+ * Replaces removedLength characters at offset with insertedText.
+ */
+public final class TextEdit {
+
+    public static TextEdit insert(int offset, CharSequence insertedText) {
+        return new TextEdit(offset, 0, insertedText);
+    }
+
+    public static TextEdit remove(int offset, int removedLength) {
+        return new TextEdit(offset, removedLength, "");
+    }
+
+    private final int offset;
+    private final int removedLength;
+    private final CharSequence insertedText;
+
+    public TextEdit(int offset, int removedLength, CharSequence insertedText) {
+        if (offset < 0) {
+            throw new IllegalArgumentException("offset must be >= 0");
+        }
+        if (removedLength < 0) {
+            throw new IllegalArgumentException("removedLength must be >= 0");
+        }
+        this.offset = offset;
+        this.removedLength = removedLength;
+        this.insertedText = insertedText;
+    }
+
+    public int getOffset() {
+        return this.offset;
+    }
+
+    public int getRemovedLength() {
+        return this.removedLength;
+    }
+
+    public CharSequence getInsertedText() {
+        return this.insertedText;
+    }
+
+    public int getInsertedLength() {
+        return this.insertedText.length();
+    }
+
+    /**
+     * @return how far text after the edit moves; negative if it moves left.
+     */
+    public int getDelta() {
+        return this.insertedText.length() - this.removedLength;
+    }
+
+    public String applyTo(CharSequence input) {
+        return new StringBuilder(input.length() + this.getDelta())
+                .append(input, 0, this.offset)
+                .append(this.insertedText)
+                .append(input, this.offset + this.removedLength, input.length())
+                .toString();
+    }
+
+    @Override
+    public String toString() {
+        return "TextEdit(offset: " + this.offset
+                + ", removedLength: " + this.removedLength
+                + ", insertedText: " + this.insertedText + ")";
+    }
+
+}
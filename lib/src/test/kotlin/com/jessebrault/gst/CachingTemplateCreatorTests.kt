@@ -0,0 +1,163 @@
+package com.jessebrault.gst
+
+import com.jessebrault.gst.groovy.GroovyTemplateCreator
+import com.jessebrault.gst.parser.StandardGstParser
+import com.jessebrault.gst.util.Result
+import com.jessebrault.gst.util.SimpleDiagnostic
+import com.jessebrault.gst.util.assertNoDiagnostics
+import org.junit.jupiter.api.Test
+import java.util.concurrent.Callable
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import kotlin.test.assertEquals
+import kotlin.test.assertNotSame
+import kotlin.test.assertSame
+import kotlin.test.assertTrue
+
+class CachingTemplateCreatorTests {
+
+    private class CloseableTemplate(private val text: String) : Template, AutoCloseable {
+
+        var closed = false
+
+        override fun make(binding: Map<String, *>): String = this.text
+
+        override fun close() {
+            this.closed = true
+        }
+
+    }
+
+    private class CountingTemplateCreator : TemplateCreator {
+
+        val count = AtomicInteger()
+
+        override fun create(input: CharSequence, customImportStatements: Collection<String>): Result<Template> {
+            this.count.incrementAndGet()
+            return if (input.startsWith("fail")) {
+                Result.ofDiagnostics(listOf(SimpleDiagnostic("failed")))
+            } else {
+                Result.of(CloseableTemplate(input.toString()))
+            }
+        }
+
+    }
+
+    @Test
+    fun sameInputIsCreatedOnce() {
+        val delegate = CountingTemplateCreator()
+        val creator = CachingTemplateCreator(delegate, 10)
+        val first = creator.create("a").get()
+        assertSame(first, creator.create(StringBuilder("a")).get())
+        assertEquals(1, delegate.count.get())
+    }
+
+    @Test
+    fun importsArePartOfKey() {
+        val delegate = CountingTemplateCreator()
+        val creator = CachingTemplateCreator(delegate, 10)
+        val first = creator.create("a", listOf("import java.util.List")).get()
+        assertNotSame(first, creator.create("a").get())
+        assertNotSame(first, creator.create("a", listOf("import java.util.Set")).get())
+        assertEquals(3, delegate.count.get())
+    }
+
+    @Test
+    fun leastRecentlyUsedIsEvicted() {
+        val delegate = CountingTemplateCreator()
+        val creator = CachingTemplateCreator(delegate, 2)
+        creator.create("a")
+        val b = creator.create("b").get() as CloseableTemplate
+        creator.create("a")
+        creator.create("c") // evicts b
+        assertTrue(b.closed)
+        assertEquals(2, creator.size())
+        creator.create("a")
+        assertEquals(3, delegate.count.get())
+        creator.create("b")
+        assertEquals(4, delegate.count.get())
+    }
+
+    @Test
+    fun failuresAreNotCached() {
+        val delegate = CountingTemplateCreator()
+        val creator = CachingTemplateCreator(delegate, 10)
+        creator.create("fail")
+        creator.create("fail")
+        assertEquals(2, delegate.count.get())
+        assertEquals(0, creator.size())
+    }
+
+    @Test
+    fun groovyTemplates() {
+        val creator = CachingTemplateCreator(
+                GroovyTemplateCreator({ StandardGstParser() }, this.javaClass.classLoader, false),
+                1
+        )
+        val result = creator.create("Hello, \$name!")
+        assertNoDiagnostics(result)
+        assertSame(result, creator.create("Hello, \$name!"))
+        assertEquals("Hello, World!", result.get().make(mapOf("name" to "World")))
+    }
+
+    private class BlockingTemplateCreator(private val fail: Boolean) : TemplateCreator {
+
+        val count = AtomicInteger()
+        val release = CountDownLatch(1)
+
+        override fun create(input: CharSequence, customImportStatements: Collection<String>): Result<Template> {
+            this.count.incrementAndGet()
+            this.release.await()
+            return if (this.fail) {
+                Result.ofDiagnostics(listOf(SimpleDiagnostic("failed")))
+            } else {
+                Result.of(CloseableTemplate(input.toString()))
+            }
+        }
+
+    }
+
+    private fun createConcurrently(creator: TemplateCreator, delegate: BlockingTemplateCreator): List<Result<Template>> {
+        val threads = 32
+        val executor = Executors.newFixedThreadPool(threads)
+        try {
+            val ready = CountDownLatch(threads)
+            val futures = (0 until threads).map {
+                executor.submit(Callable {
+                    ready.countDown()
+                    creator.create("a")
+                })
+            }
+            ready.await()
+            Thread.sleep(200) // let every thread reach create()
+            delegate.release.countDown()
+            return futures.map { it.get(10, TimeUnit.SECONDS) }
+        } finally {
+            executor.shutdownNow()
+        }
+    }
+
+    @Test
+    fun concurrentRequestsShareOneCreation() {
+        val delegate = BlockingTemplateCreator(false)
+        val results = this.createConcurrently(CachingTemplateCreator(delegate, 10), delegate)
+        assertEquals(1, delegate.count.get())
+        results.forEach { assertSame(results[0], it) }
+    }
+
+    @Test
+    fun concurrentRequestsShareOneFailure() {
+        val delegate = BlockingTemplateCreator(true)
+        val creator = CachingTemplateCreator(delegate, 10)
+        val results = this.createConcurrently(creator, delegate)
+        assertEquals(1, delegate.count.get())
+        results.forEach { assertSame(results[0], it) }
+        assertTrue(results[0].hasDiagnostics())
+        // but the failure is not kept
+        creator.create("a")
+        assertEquals(2, delegate.count.get())
+    }
+
+}
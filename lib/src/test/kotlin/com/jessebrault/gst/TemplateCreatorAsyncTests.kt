@@ -0,0 +1,62 @@
+package com.jessebrault.gst
+
+import com.jessebrault.gst.groovy.GroovyTemplateCreator
+import com.jessebrault.gst.parser.StandardGstParser
+import com.jessebrault.gst.util.Result
+import com.jessebrault.gst.util.SimpleDiagnostic
+import com.jessebrault.gst.util.assertNoDiagnostics
+import org.junit.jupiter.api.Test
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import kotlin.test.assertEquals
+import kotlin.test.assertTrue
+
+class TemplateCreatorAsyncTests {
+
+    private class ThreadNameTemplateCreator : TemplateCreator {
+
+        override fun create(input: CharSequence, customImportStatements: Collection<String>): Result<Template> {
+            return if (input.startsWith("fail")) {
+                Result.ofDiagnostics(listOf(SimpleDiagnostic("failed")))
+            } else {
+                val threadName = Thread.currentThread().name
+                Result.of(Template { "$input on $threadName" })
+            }
+        }
+
+    }
+
+    @Test
+    fun createAsyncRunsOnExecutor() {
+        val executor = Executors.newSingleThreadExecutor { Thread(it, "gst-test") }
+        try {
+            val result = ThreadNameTemplateCreator().createAsync("a", listOf(), executor).get(10, TimeUnit.SECONDS)
+            assertEquals("a on gst-test", result.get().make(mapOf<String, Any>()))
+        } finally {
+            executor.shutdownNow()
+        }
+    }
+
+    @Test
+    fun createAllKeepsOrder() {
+        val inputs = (0 until 100).map { if (it % 10 == 0) "fail$it" else "t$it" }
+        val results = ThreadNameTemplateCreator().createAll(inputs, listOf()).get(10, TimeUnit.SECONDS)
+        assertEquals(inputs.size, results.size)
+        results.forEachIndexed { i, result ->
+            if (i % 10 == 0) {
+                assertTrue(result.hasDiagnostics())
+            } else {
+                assertTrue(result.get().make(mapOf<String, Any>()).startsWith("t$i on "))
+            }
+        }
+    }
+
+    @Test
+    fun groovyTemplatesAsync() {
+        val creator = GroovyTemplateCreator({ StandardGstParser() }, this.javaClass.classLoader, false)
+        val result = creator.createAsync("Hello, \$name!").get(30, TimeUnit.SECONDS)
+        assertNoDiagnostics(result)
+        assertEquals("Hello, World!", result.get().make(mapOf("name" to "World")))
+    }
+
+}
@@ -0,0 +1,73 @@
+package com.jessebrault.gst.groovy
+
+import com.jessebrault.gst.parser.ExtendedGstParser
+import com.jessebrault.gst.parser.ParserAccumulator
+import com.jessebrault.gst.parser.StandardGstParser
+import com.jessebrault.gst.parser.TreeNodeParserAccumulator
+import com.jessebrault.gst.tokenizer.FsmBasedTokenizer
+import com.jessebrault.gst.tokenizer.TokenizerState
+import org.junit.jupiter.api.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertFalse
+import kotlin.test.assertTrue
+
+class GroovyScriptParserAccumulatorTests {
+
+    private fun parse(input: String, acc: ParserAccumulator) {
+        val tokenizer = FsmBasedTokenizer()
+        tokenizer.start(input, 0, input.length, TokenizerState.TEXT)
+        ExtendedGstParser().parse(tokenizer, acc)
+    }
+
+    private fun assertSameAsTransformer(input: String, compileStatic: Boolean = false) {
+        val importStatements = listOf("import java.util.Map")
+        val treeAcc = TreeNodeParserAccumulator()
+        this.parse(input, treeAcc)
+        val transformer = GroovyAstToScriptTransformer(importStatements, input, compileStatic)
+        transformer.visitGString(treeAcc.result)
+
+        val scriptAcc = GroovyScriptParserAccumulator(importStatements, input, compileStatic)
+        this.parse(input, scriptAcc)
+        assertFalse(scriptAcc.hasDiagnostics())
+        assertEquals(transformer.result, scriptAcc.result)
+    }
+
+    @Test
+    fun empty() = this.assertSameAsTransformer("")
+
+    @Test
+    fun text() = this.assertSameAsTransformer("Hello, World!\n")
+
+    @Test
+    fun allNodes() = this.assertSameAsTransformer(
+            "a<%@ import java.util.List %>b<% def c = 1 %><%= c %>\${ c + 1 }\$d.e<%@ import java.util.Set %>"
+    )
+
+    @Test
+    fun bindingDeclarations() = this.assertSameAsTransformer(
+            "a<%@ import java.util.List %>\$b<%@ binding String b; List<Integer> c\n d %>",
+            true
+    )
+
+    @Test
+    fun verbatimText() = this.assertSameAsTransformer("it's C:\\dir\t\"\"\" \$ \\")
+
+    @Test
+    fun adjacentTextIsOneWrite() {
+        val input = "a<%@ import java.util.List %>b\$c"
+        val acc = GroovyScriptParserAccumulator(listOf(), input)
+        this.parse(input, acc)
+        assertTrue(acc.result.contains("out.write(gstStaticText, 0, 2)\n"))
+    }
+
+    @Test
+    fun diagnostics() {
+        val input = "<%@ import java.util.List %>"
+        val acc = GroovyScriptParserAccumulator(listOf(), input)
+        val tokenizer = FsmBasedTokenizer()
+        tokenizer.start(input, 0, input.length, TokenizerState.TEXT)
+        StandardGstParser().parse(tokenizer, acc)
+        assertTrue(acc.hasDiagnostics())
+    }
+
+}
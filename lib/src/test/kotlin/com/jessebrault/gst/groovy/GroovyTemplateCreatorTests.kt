@@ -1,17 +1,32 @@
 package com.jessebrault.gst.groovy
 
+import com.jessebrault.gst.Template
 import com.jessebrault.gst.TemplateCreator
+import com.jessebrault.gst.ast.TreeNode
 import com.jessebrault.gst.parser.Parser
 import com.jessebrault.gst.parser.StandardGstParser
 import org.junit.jupiter.api.Test
+import java.io.ByteArrayOutputStream
+import java.io.Writer
 import java.net.URL
+import java.nio.ByteBuffer
+import java.nio.channels.Channels
+import java.nio.file.Files
+import java.nio.file.Path
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import kotlin.test.assertContentEquals
 import kotlin.test.assertEquals
+import kotlin.test.assertFalse
+import kotlin.test.assertTrue
 
 import com.jessebrault.gst.parser.ExtendedGstParser
+import com.jessebrault.gst.tokenizer.CharScanningTokenizer
+import com.jessebrault.gst.tokenizer.FsmBasedTokenizer
+import com.jessebrault.gst.tokenizer.Tokenizer
+import com.jessebrault.gst.util.Result
 import com.jessebrault.gst.util.assertNoDiagnostics
 import groovy.lang.GroovyClassLoader
-import org.junit.jupiter.api.fail
-import java.io.IOException
 
 class GroovyTemplateCreatorTests {
 
@@ -22,18 +37,18 @@ class GroovyTemplateCreatorTests {
 
     private fun getCreator(
             parser: Parser = StandardGstParser(),
+            tokenizer: () -> Tokenizer = ::FsmBasedTokenizer,
             urls: Collection<URL> = emptyList(),
             printScript: Boolean = true
-    ): TemplateCreator = try {
+    ): TemplateCreator {
         val parentClassLoader = GroovyClassLoader(this.javaClass.classLoader)
         urls.forEach(parentClassLoader::addURL)
-        GroovyTemplateCreator(
+        return GroovyTemplateCreator(
                 { parser },
+                tokenizer,
                 parentClassLoader,
                 printScript
         )
-    } catch (e: IOException) {
-        fail(e)
     }
 
     private fun doStandardTest(input: String, expectedOutput: String) {
@@ -96,4 +111,381 @@ class GroovyTemplateCreatorTests {
             "\${ 'Hello, World!' }", "Hello, World!"
     )
 
-}
\ No newline at end of file
+    @Test
+    fun bindingResolution() {
+        val input = "<% count = count + 1 %>\$count \$missing <%= def a = 1; a + count %> <% [1, 2].each { %>\${ it }<% } %>"
+        val template = this.getCreator().create(input).get()
+        val binding = mutableMapOf<String, Any>("count" to 1)
+        assertEquals("2 null 3 nullnull", template.make(binding))
+        assertEquals(2, binding["count"])
+    }
+
+    @Test
+    fun declarationsInExpressionsAreLocal() {
+        val input = "<%= def y = 1 %><%= def y = 2 %> \${ def z = 3 }\${ def z = 4 }"
+        for (printScript in listOf(true, false)) {
+            val result = this.getCreator(printScript = printScript).create(input)
+            assertNoDiagnostics(result)
+            assertEquals("12 34", result.get().make())
+        }
+    }
+
+    @Test
+    fun staticTextIsVerbatim() = this.doStandardTest(
+            "it's C:\\dir\\n \"\"\" \$ \\", "it's C:\\dir\\n \"\"\" \$ \\"
+    )
+
+    @Test
+    fun charScanningTokenizer() {
+        val result = this.getCreator(tokenizer = ::CharScanningTokenizer).create("\${ greeting }, \$name!")
+        assertNoDiagnostics(result)
+        assertEquals(
+                "Hello, World!",
+                result.get().make(mapOf("greeting" to "Hello", "name" to "World"))
+        )
+    }
+
+    @Test
+    fun streaming() {
+        val input = "<%@ import java.util.List %><% List a = [1] %><%= a[0] %> \${ greeting }, \$name!"
+        val result = this.getCreator(parser = ExtendedGstParser(), printScript = false).create(input)
+        assertNoDiagnostics(result)
+        assertEquals(
+                "1 Hello, World!",
+                result.get().make(mapOf("greeting" to "Hello", "name" to "World"))
+        )
+    }
+
+    @Test
+    fun streamingReportsDiagnostics() {
+        val result = this.getCreator(printScript = false).create("<%@ import java.util.List %>")
+        assertEquals(1, result.diagnostics.size)
+    }
+
+    @Test
+    fun createAll() {
+        val inputs = (0 until 50).map { i ->
+            when (i % 10) {
+                3 -> "<%@ import java.util.List %>" // parser diagnostic
+                7 -> "<% def x = %>" // Groovy compilation error
+                else -> "\${ greeting }, \$name $i!"
+            }
+        }
+        val individuallyCreated = AtomicInteger()
+        val creator = object : GroovyTemplateCreator({ StandardGstParser() }, this.javaClass.classLoader, false) {
+            override fun createTemplate(scriptText: String): Result<Template> {
+                individuallyCreated.incrementAndGet()
+                return super.createTemplate(scriptText)
+            }
+        }
+        val results = creator.createAll(inputs, listOf()).get(30, TimeUnit.SECONDS)
+        assertEquals(inputs.size, results.size)
+        // only the scripts which failed to compile
+        assertEquals(5, individuallyCreated.get())
+        results.forEachIndexed { i, result ->
+            when (i % 10) {
+                3, 7 -> assertTrue(result.hasDiagnostics())
+                else -> {
+                    assertNoDiagnostics(result)
+                    val template = result.get()
+                    assertEquals(
+                            "Hello, World $i!",
+                            template.make(mapOf("greeting" to "Hello", "name" to "World"))
+                    )
+                    (template as GroovyTemplate).close()
+                }
+            }
+        }
+    }
+
+    @Test
+    fun createAllWithImportAvailableViaUrl() {
+        val classDirUrl = writeClass(
+                "BatchTest",
+                listOf("com", "jessebrault", "gst", "tmp"),
+                "package com.jessebrault.gst.tmp\n\nclass BatchTest { String greeting = 'Hello, World!' }"
+        )
+        val inputs = listOf(
+                "<%@ import com.jessebrault.gst.tmp.BatchTest %><%= new BatchTest().greeting %>",
+                "\$name"
+        )
+        val results = this.getCreator(parser = ExtendedGstParser(), urls = listOf(classDirUrl), printScript = false)
+                .createAll(inputs, listOf())
+                .get(30, TimeUnit.SECONDS)
+        results.forEach(::assertNoDiagnostics)
+        assertEquals("Hello, World!", results[0].get().make())
+        assertEquals("World", results[1].get().make(mapOf("name" to "World")))
+    }
+
+    private open class ScriptCountingCreator(
+            cacheDirectory: Path,
+            tokenizer: () -> Tokenizer = ::FsmBasedTokenizer
+    ) : GroovyTemplateCreator(
+            { StandardGstParser() },
+            tokenizer,
+            GroovyTemplateCreatorTests::class.java.classLoader,
+            false,
+            cacheDirectory
+    ) {
+
+        val scripts = AtomicInteger()
+
+        // so that even plain templates are compiled from a script, and cached
+        override fun isDirectBytecodeEnabled() = false
+
+        override fun createScript(input: CharSequence, customImportStatements: Collection<String>): Result<String> {
+            this.scripts.incrementAndGet()
+            return super.createScript(input, customImportStatements)
+        }
+
+    }
+
+    private class HookCountingCreator : GroovyTemplateCreator(
+            { StandardGstParser() },
+            GroovyTemplateCreatorTests::class.java.classLoader,
+            false
+    ) {
+
+        val parses = AtomicInteger()
+        val transforms = AtomicInteger()
+
+        // as the class doc requires of a subclass overriding the hooks
+        override fun isStreamingEnabled() = false
+
+        override fun isDirectBytecodeEnabled() = false
+
+        override fun tokenizeAndParse(input: CharSequence): TreeNode {
+            this.parses.incrementAndGet()
+            return super.tokenizeAndParse(input)
+        }
+
+        override fun transformToScript(
+                input: CharSequence,
+                customImportStatements: Collection<String>,
+                root: TreeNode
+        ): String {
+            this.transforms.incrementAndGet()
+            return super.transformToScript(input, customImportStatements, root)
+        }
+
+    }
+
+    @Test
+    fun overriddenHooksAreCalled() {
+        val creator = HookCountingCreator()
+        assertEquals("Hello, World!", creator.create("Hello, \$name!").get().make(mapOf("name" to "World")))
+        assertEquals("1", creator.create("<%= 1 %>").get().make())
+        assertEquals(2, creator.parses.get())
+        assertEquals(2, creator.transforms.get())
+    }
+
+    @Test
+    fun bytecodeCache() {
+        val cacheDirectory = Files.createTempDirectory("groovyTemplateCreatorTests")
+        val first = ScriptCountingCreator(cacheDirectory)
+        assertEquals("Hello, World!", first.create("Hello, \$name!").get().make(mapOf("name" to "World")))
+        assertEquals(1, first.scripts.get())
+        assertEquals(1, Files.list(cacheDirectory).use { it.count() })
+
+        // e.g. after a restart
+        val second = ScriptCountingCreator(cacheDirectory)
+        assertEquals("Hello, World!", second.create("Hello, \$name!").get().make(mapOf("name" to "World")))
+        assertEquals(0, second.scripts.get())
+
+        // the imports are part of the key
+        assertNoDiagnostics(second.create("Hello, \$name!", listOf("import java.util.List")))
+        assertEquals(1, second.scripts.get())
+    }
+
+    @Test
+    fun bytecodeCacheKeyHasCreatorAndTokenizer() {
+        val cacheDirectory = Files.createTempDirectory("groovyTemplateCreatorTests")
+        ScriptCountingCreator(cacheDirectory).create("Hello, \$name!")
+        val otherTokenizer = ScriptCountingCreator(cacheDirectory, ::CharScanningTokenizer)
+        assertNoDiagnostics(otherTokenizer.create("Hello, \$name!"))
+        assertEquals(1, otherTokenizer.scripts.get())
+        val otherCreator = object : ScriptCountingCreator(cacheDirectory) {}
+        assertNoDiagnostics(otherCreator.create("Hello, \$name!"))
+        assertEquals(1, otherCreator.scripts.get())
+        assertEquals(3, Files.list(cacheDirectory).use { it.count() })
+    }
+
+    @Test
+    fun bytecodeCacheWithExtraClasses() {
+        val cacheDirectory = Files.createTempDirectory("groovyTemplateCreatorTests")
+        // the unit also compiles CachedHelper, so the template is compiled again on its own
+        val imports = listOf("class CachedHelper { static String hi() { 'Hello, World!' } }")
+        repeat(2) { i ->
+            val creator = ScriptCountingCreator(cacheDirectory)
+            val result = creator.create("<%= CachedHelper.hi() %>", imports)
+            assertNoDiagnostics(result)
+            assertEquals("Hello, World!", result.get().make())
+            assertEquals(if (i == 0) 1 else 0, creator.scripts.get())
+        }
+    }
+
+    @Test
+    fun bytecodeCacheIgnoresCorruptEntries() {
+        val cacheDirectory = Files.createTempDirectory("groovyTemplateCreatorTests")
+        ScriptCountingCreator(cacheDirectory).create("Hello, \$name!")
+        Files.list(cacheDirectory).use { it.toList() }.forEach { Files.write(it, byteArrayOf(1, 2, 3)) }
+        val creator = ScriptCountingCreator(cacheDirectory)
+        assertEquals("Hello, World!", creator.create("Hello, \$name!").get().make(mapOf("name" to "World")))
+        assertEquals(1, creator.scripts.get())
+        // rewritten
+        assertEquals(0, ScriptCountingCreator(cacheDirectory).also { it.create("Hello, \$name!") }.scripts.get())
+    }
+
+    @Test
+    fun createAllWithBytecodeCache() {
+        val cacheDirectory = Files.createTempDirectory("groovyTemplateCreatorTests")
+        val inputs = (0 until 20).map { "\$name $it" }
+        ScriptCountingCreator(cacheDirectory).createAll(inputs, listOf()).get(30, TimeUnit.SECONDS)
+        val creator = ScriptCountingCreator(cacheDirectory)
+        val results = creator.createAll(inputs + "\$name new", listOf()).get(30, TimeUnit.SECONDS)
+        assertEquals(1, creator.scripts.get())
+        results.forEachIndexed { i, result ->
+            assertEquals(if (i < 20) "World $i" else "World new", result.get().make(mapOf("name" to "World")))
+        }
+    }
+
+    @Test
+    fun makeIntoWriter() {
+        val template = this.getCreator().create("<p>\$name</p><%= 1 + 1 %>").get()
+        val writes = mutableListOf<String>()
+        val writer = object : Writer() {
+            override fun write(cbuf: CharArray, off: Int, len: Int) {
+                writes.add(String(cbuf, off, len))
+            }
+            override fun flush() {}
+            override fun close() {}
+        }
+        template.make(mapOf("name" to "World"), writer)
+        assertEquals("<p>World</p>2", writes.joinToString(""))
+        // written as the template goes, not all at once at the end
+        assertTrue(writes.size > 1)
+    }
+
+    @Test
+    fun makeIntoAppendable() {
+        val template = this.getCreator().create("<p>\$name</p><%= 1 + 1 %>").get()
+        val b = StringBuilder("before ")
+        template.make(mapOf("name" to "World"), b)
+        assertEquals("before <p>World</p>2", b.toString())
+    }
+
+    @Test
+    fun makeUtf8() {
+        val template = this.getCreator().create("<p>h\u00e9llo \ud83d\ude00 \$name</p><%= '\u20ac' + 1 %>\${ 'x' * 10000 }").get()
+        val binding = mapOf("name" to "W\u00f6rld \ud83c\udf0d")
+        val expected = template.make(binding).toByteArray(Charsets.UTF_8)
+
+        val outputStream = ByteArrayOutputStream()
+        template.makeUtf8(binding, outputStream)
+        assertContentEquals(expected, outputStream.toByteArray())
+
+        val channelOut = ByteArrayOutputStream()
+        template.makeUtf8(binding, Channels.newChannel(channelOut))
+        assertContentEquals(expected, channelOut.toByteArray())
+
+        val byteBuffer = ByteBuffer.allocate(expected.size)
+        template.makeUtf8(binding, byteBuffer)
+        assertContentEquals(expected, byteBuffer.array())
+    }
+
+    @Test
+    fun largeTemplate() {
+        // too much for one method and too much text for one class file constant
+        val text = "x".repeat(70000)
+        val rows = (0 until 3000).joinToString("") { "<p>$it \$name</p><% total += $it %>" }
+        val input = "<% def total = 0; String label = 'total' %>$text$rows<% [1, 2].each { n -> %>\${ n }<% } %>\${ label }: \${ total }"
+        val template = this.getCreator(printScript = false).create(input).get()
+        val expected = text + (0 until 3000).joinToString("") { "<p>$it World</p>" } + "12total: 4498500"
+        assertEquals(expected, template.make(mapOf("name" to "World")))
+        // locals are per render
+        assertEquals(expected, template.make(mapOf("name" to "World")))
+        val outputStream = ByteArrayOutputStream()
+        template.makeUtf8(mapOf("name" to "World"), outputStream)
+        assertEquals(expected, outputStream.toString(Charsets.UTF_8))
+    }
+
+    @Test
+    fun largeTemplateLocalsDoNotHideEarlierBindings() {
+        val rows = (0 until 3000).joinToString("") { "<p>$it \$name</p>" }
+        val input = "\$x <% [1].each { %>\$x<% } %>$rows<% def x = 'local' %>\$x <% [1].each { %>\$x<% } %>"
+        val template = this.getCreator(printScript = false).create(input).get()
+        val expected = "binding binding" + (0 until 3000).joinToString("") { "<p>$it World</p>" } + "local local"
+        assertEquals(expected, template.make(mapOf("name" to "World", "x" to "binding")))
+    }
+
+    private fun getCompileStaticCreator() = GroovyTemplateCreator(
+            { ExtendedGstParser() },
+            ::FsmBasedTokenizer,
+            this.javaClass.classLoader,
+            false,
+            null,
+            true
+    )
+
+    @Test
+    fun compileStatic() {
+        val input = "<%@ binding String name; List<Integer> numbers %>Hello, \$name!" +
+                "<% numbers.each { n -> %> \${ n * 2 }<% } %> <%= name.toUpperCase() %>"
+        val result = this.getCompileStaticCreator().create(input)
+        assertNoDiagnostics(result)
+        assertEquals("Hello, World! 2 4 6 WORLD", result.get().make(mapOf("name" to "World", "numbers" to listOf(1, 2, 3))))
+        // undeclared, so the type checker cannot resolve it
+        assertTrue(this.getCompileStaticCreator().create("Hello, \$name!").hasDiagnostics())
+    }
+
+    @Test
+    fun compileStaticLargeTemplate() {
+        val rows = (0 until 3000).joinToString("") { "<p>\$name $it</p><% total += $it %>" }
+        val result = this.getCompileStaticCreator().create("<%@ binding String name %><% int total = 0 %>$rows\$total")
+        assertNoDiagnostics(result)
+        val expected = (0 until 3000).joinToString("") { "<p>World $it</p>" } + "4498500"
+        assertEquals(expected, result.get().make(mapOf("name" to "World")))
+    }
+
+    @Test
+    fun bindingDeclarationsAreLocal() {
+        val template = this.getCreator(parser = ExtendedGstParser()).create("<%@ binding int count\n label %><% count++ %>\$count \$label").get()
+        val binding = mutableMapOf<String, Any>("count" to 1, "label" to "a")
+        assertEquals("2 a", template.make(binding))
+        assertEquals(1, binding["count"])
+    }
+
+    @Test
+    fun directBytecode() {
+        val creator = this.getCreator(printScript = false)
+        val template = creator.create("Hello, \$user.name! \$missing \$items\u00e9 \$1").get()
+        val binding = mapOf("user" to mapOf("name" to "W\u00f6rld"), "items" to listOf(1, 2))
+        val expected = "Hello, W\u00f6rld! null [1, 2]\u00e9 \$1"
+        assertEquals(expected, template.make(binding))
+        val outputStream = ByteArrayOutputStream()
+        template.makeUtf8(binding, outputStream)
+        assertEquals(expected, outputStream.toString(Charsets.UTF_8))
+        // the same as the script renders
+        val scriptTemplate = this.getCreator(printScript = true).create("Hello, \$user.name! \$missing \$items\u00e9 \$1").get()
+        assertEquals(expected, scriptTemplate.make(binding))
+        assertEquals("Hi, Greeter", creator.create("Hi, \$greeter.class.simpleName").get().make(mapOf("greeter" to Greeter())))
+    }
+
+    @Test
+    fun directBytecodeLeavesClassesToTheScript() {
+        val direct = this.getCreator(printScript = false)
+        val script = this.getCreator(printScript = true)
+        for ((input, imports) in listOf(
+                "\$Math.PI" to listOf(),
+                "\$java.lang.Math.PI" to listOf(),
+                "\$m.PI" to listOf("import java.lang.Math as m")
+        )) {
+            val expected = script.create(input, imports).get().make(mapOf<String, Any>())
+            assertEquals(Math.PI.toString(), expected, input)
+            val template = direct.create(input, imports).get()
+            assertFalse(template is BytecodeTemplate, input)
+            assertEquals(expected, template.make(mapOf<String, Any>()), input)
+        }
+    }
+
+}
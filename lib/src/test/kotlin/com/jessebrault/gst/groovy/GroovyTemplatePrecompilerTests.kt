@@ -0,0 +1,103 @@
+package com.jessebrault.gst.groovy
+
+import com.jessebrault.gst.parser.ExtendedGstParser
+import com.jessebrault.gst.tokenizer.FsmBasedTokenizer
+import com.jessebrault.gst.util.assertNoDiagnostics
+import org.junit.jupiter.api.Test
+import java.net.URLClassLoader
+import java.nio.file.Files
+import kotlin.test.assertEquals
+import kotlin.test.assertFalse
+import kotlin.test.assertTrue
+
+class GroovyTemplatePrecompilerTests {
+
+    private fun getPrecompiler() = GroovyTemplatePrecompiler(
+            { ExtendedGstParser() },
+            ::FsmBasedTokenizer,
+            this.javaClass.classLoader,
+            "test-project"
+    )
+
+    @Test
+    fun precompiledTemplatesLoadWithoutCompiling() {
+        val outputDirectory = Files.createTempDirectory("groovyTemplatePrecompilerTests")
+        val result = this.getPrecompiler().precompile(
+                mapOf(
+                        "pages/index.gst" to "<%@ import java.util.List %><% List l = [1, 2] %><%= l.size() %> \$name",
+                        "greeting.gst" to "\${ greeting }, World!"
+                ),
+                listOf(),
+                outputDirectory
+        )
+        assertNoDiagnostics(result)
+        assertTrue(Files.exists(outputDirectory.resolve(PrecompiledTemplates.indexResourceName)))
+
+        URLClassLoader(arrayOf(outputDirectory.toUri().toURL()), this.javaClass.classLoader).use { classLoader ->
+            val templates = PrecompiledTemplates.load(classLoader)
+            assertEquals(setOf("pages/index.gst", "greeting.gst"), templates.templateNames)
+            val index = templates.get("pages/index.gst")
+            assertNoDiagnostics(index)
+            assertEquals("2 World", index.get().make(mapOf("name" to "World")))
+            assertEquals("Hello, World!", templates.get("greeting.gst").get().make(mapOf("greeting" to "Hello")))
+            assertTrue(templates.get("missing.gst").hasDiagnostics())
+        }
+    }
+
+    @Test
+    fun diagnosticsNameTemplates() {
+        val outputDirectory = Files.createTempDirectory("groovyTemplatePrecompilerTests")
+        val parseFailure = this.getPrecompiler().precompile(
+                mapOf("bad.gst" to "<% def x = 1", "good.gst" to "Hello"),
+                listOf(),
+                outputDirectory
+        )
+        assertEquals(1, parseFailure.diagnostics.size)
+        assertTrue(parseFailure.diagnostics.first().message.startsWith("bad.gst: "))
+
+        val compileFailure = this.getPrecompiler().precompile(
+                mapOf("bad.gst" to "<% def x = %>", "good.gst" to "Hello"),
+                listOf(),
+                outputDirectory
+        )
+        assertTrue(compileFailure.hasDiagnostics())
+        assertTrue(compileFailure.diagnostics.all { it.message.startsWith("bad.gst: ") })
+
+        assertFalse(Files.exists(outputDirectory.resolve(PrecompiledTemplates.indexResourceName)))
+    }
+
+    @Test
+    fun largeStaticTextIsAResource() {
+        val outputDirectory = Files.createTempDirectory("groovyTemplatePrecompilerTests")
+        val text = "\u00e9".repeat(40000)
+        assertNoDiagnostics(this.getPrecompiler().precompile(mapOf("large.gst" to "$text\$name"), listOf(), outputDirectory))
+        assertTrue(Files.walk(outputDirectory).use { paths -> paths.anyMatch { it.toString().endsWith(".gsttext") } })
+        URLClassLoader(arrayOf(outputDirectory.toUri().toURL()), this.javaClass.classLoader).use { classLoader ->
+            val template = PrecompiledTemplates.load(classLoader).get("large.gst").get()
+            assertEquals(text + "World", template.make(mapOf("name" to "World")))
+        }
+    }
+
+    @Test
+    fun mainCompileStatic() {
+        val sourceDirectory = Files.createTempDirectory("groovyTemplatePrecompilerTests")
+        val outputDirectory = Files.createTempDirectory("groovyTemplatePrecompilerTests")
+        // statically, the overload is chosen by the declared type rather than by the char[] value
+        Files.writeString(sourceDirectory.resolve("value.gst"), "<%@ binding Object o %>\${ String.valueOf(o) }")
+        for (compileStatic in listOf(false, true)) {
+            GroovyTemplatePrecompiler.main(listOfNotNull(
+                    if (compileStatic) "--compileStatic" else null,
+                    sourceDirectory.toString(),
+                    outputDirectory.toString(),
+                    "test-project-$compileStatic",
+                    ExtendedGstParser::class.java.name
+            ).toTypedArray())
+            URLClassLoader(arrayOf(outputDirectory.toUri().toURL()), this.javaClass.classLoader).use { classLoader ->
+                val output = PrecompiledTemplates.load(classLoader).get("value.gst").get()
+                        .make(mapOf("o" to charArrayOf('a', 'b')))
+                assertEquals(!compileStatic, output == "ab", output)
+            }
+        }
+    }
+
+}
@@ -0,0 +1,102 @@
+package com.jessebrault.gst.groovy
+
+import com.jessebrault.gst.parser.StandardGstParser
+import com.jessebrault.gst.tokenizer.FsmBasedTokenizer
+import com.jessebrault.gst.util.assertNoDiagnostics
+import org.junit.jupiter.api.Test
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.Executor
+import kotlin.test.assertEquals
+import kotlin.test.assertFalse
+import kotlin.test.assertIs
+import kotlin.test.assertTrue
+
+class TieredTemplateCreatorTests {
+
+    // runs the compilation only when told to
+    private val tasks = ConcurrentLinkedQueue<Runnable>()
+    private val executor = Executor { this.tasks.add(it) }
+
+    private fun runTasks() {
+        while (true) {
+            (this.tasks.poll() ?: return).run()
+        }
+    }
+
+    private fun getCreator() = TieredTemplateCreator(
+            GroovyTemplateCreator({ StandardGstParser() }, this.javaClass.classLoader, false),
+            { StandardGstParser() },
+            ::FsmBasedTokenizer,
+            this.executor
+    )
+
+    @Test
+    fun interpretedThenCompiled() {
+        val result = this.getCreator().create("Hello, \${ user.name }! <%= count %> \$missing")
+        assertNoDiagnostics(result)
+        val template = assertIs<TieredTemplate>(result.get())
+        val binding = mapOf("user" to mapOf("name" to "World"), "count" to 2)
+        assertFalse(template.compiled.isDone)
+        assertEquals("Hello, World! 2 null", template.make(binding))
+
+        this.runTasks()
+        assertTrue(template.compiled.isDone)
+        assertIs<GroovyTemplate>(template.compiled.get().get())
+        assertEquals("Hello, World! 2 null", template.make(binding))
+        assertEquals("Hello, World! 2 null", template.makeUtf8ToString(binding))
+    }
+
+    private fun TieredTemplate.makeUtf8ToString(binding: Map<String, *>): String {
+        val out = java.io.ByteArrayOutputStream()
+        this.makeUtf8(binding, out)
+        return out.toString(Charsets.UTF_8)
+    }
+
+    @Test
+    fun scriptletsAreCompiledAtOnce() {
+        val result = this.getCreator().create("<% def x = 1 %>\$x \${ it }")
+        assertNoDiagnostics(result)
+        assertIs<GroovyTemplate>(result.get())
+        assertTrue(this.tasks.isEmpty())
+        assertEquals("1 null", result.get().make())
+    }
+
+    @Test
+    fun onlyPropertyPathsAreInterpreted() {
+        val tiered = this.getCreator()
+        for (input in listOf(
+                "\${ a + 1 }",
+                "\${ it }",
+                "<%= this %>",
+                "\$out",
+                "\${ a.b() }",
+                "\${ Math.PI }",
+                "<%= Integer.MAX_VALUE %>",
+                "\$Math.PI",
+                "\$java.lang.Math.PI"
+        )) {
+            assertFalse(tiered.create(input).get() is TieredTemplate, input)
+        }
+        assertEquals(Math.PI.toString(), tiered.create("\${ Math.PI }").get().make())
+        // an import could make any name a class
+        val imported = tiered.create("\${ m.PI }", listOf("import java.lang.Math as m")).get()
+        assertFalse(imported is TieredTemplate)
+        assertEquals(Math.PI.toString(), imported.make())
+        val all = tiered.createAll(listOf("\$m.PI"), listOf("import java.lang.Math as m"), this.executor)
+        this.runTasks()
+        assertEquals(Math.PI.toString(), all.get().single().get().make())
+    }
+
+    @Test
+    fun createAll() {
+        val future = this.getCreator().createAll(listOf("\$a", "<% out << a %>!", "\${ a }?"), listOf(), this.executor)
+        this.runTasks()
+        val results = future.get()
+        val binding = mapOf("a" to "A")
+        assertEquals(listOf("A", "A!", "A?"), results.map { it.get().make(binding) })
+        assertIs<TieredTemplate>(results[0].get())
+        assertIs<GroovyTemplate>(results[1].get())
+        assertTrue((results[2].get() as TieredTemplate).compiled.isDone)
+    }
+
+}
@@ -0,0 +1,75 @@
+package com.jessebrault.gst.groovy
+
+import org.junit.jupiter.api.Test
+import java.io.ByteArrayOutputStream
+import kotlin.test.assertEquals
+
+class Utf8WriterTests {
+
+    private fun write(staticText: Utf8Writer.StaticText? = null, block: (Utf8Writer) -> Unit): String {
+        val out = ByteArrayOutputStream()
+        val writer = Utf8Writer(staticText, out::write)
+        block(writer)
+        writer.finish()
+        return out.toString(Charsets.UTF_8)
+    }
+
+    @Test
+    fun encodes() {
+        val s = "a\u00e9\u20ac\ud83d\ude00"
+        assertEquals(s, this.write { it.write(s) })
+        assertEquals(s, this.write { it.write(s.toCharArray()) })
+    }
+
+    @Test
+    fun surrogatePairAcrossWrites() {
+        assertEquals("\ud83d\ude00", this.write {
+            it.write("\ud83d")
+            it.write('\ude00'.code)
+        })
+    }
+
+    @Test
+    fun unpairedSurrogates() {
+        assertEquals("?a?", this.write { it.write("\ud83da\ude00") })
+        assertEquals("a?", this.write { it.write("a\ud83d") })
+    }
+
+    @Test
+    fun staticTextSegmentsByIdentity() {
+        val text = "abcd"
+        // stand-in bytes, to tell which were written as they are
+        val staticText = Utf8Writer.StaticText(text, intArrayOf(0, 2, 4), "ABCD".toByteArray(), intArrayOf(0, 2, 4))
+        val otherInstance = String(text.toCharArray())
+        assertEquals("CDABCDab", this.write(staticText) {
+            it.write(text, 2, 2)
+            it.write(text, 0, 4)
+            it.write(otherInstance, 0, 2)
+        })
+        // not a segment
+        assertEquals("bc", this.write(staticText) { it.write(text, 1, 2) })
+    }
+
+    @Test
+    fun encodeStaticText() {
+        val text = "\u00e9a\ud83d\ude00"
+        val staticText = Utf8Writer.StaticText.encode(text, intArrayOf(0, 2, 4))
+        assertEquals("a\ud83d\ude00\u00e9", this.write(staticText) {
+            it.write(text, 1, 1)
+            it.write(text, 2, 2)
+            it.write(text, 0, 1)
+        })
+    }
+
+    @Test
+    fun largerThanBuffer() {
+        val large = "\u00e9".repeat(10_000)
+        val largeStatic = "x".repeat(20_000)
+        assertEquals("a$large$largeStatic", this.write(Utf8Writer.StaticText.encode(largeStatic, intArrayOf(0, 20_000))) {
+            it.write("a")
+            it.write(large)
+            it.write(largeStatic)
+        })
+    }
+
+}
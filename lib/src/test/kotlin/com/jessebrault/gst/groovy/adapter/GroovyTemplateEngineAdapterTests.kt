@@ -0,0 +1,20 @@
+package com.jessebrault.gst.groovy.adapter
+
+import com.jessebrault.gst.parser.StandardGstParser
+import org.junit.jupiter.api.Test
+import java.io.StringWriter
+import kotlin.test.assertEquals
+
+class GroovyTemplateEngineAdapterTests {
+
+    @Test
+    fun writableWritesIntoWriter() {
+        val engine = GroovyTemplateEngineAdapter({ StandardGstParser() }, this.javaClass.classLoader, listOf())
+        val template = engine.createTemplate("Hello, \$name!")
+        val w = StringWriter()
+        w.write("> ")
+        template.make(mapOf("name" to "World")).writeTo(w)
+        assertEquals("> Hello, World!", w.toString())
+    }
+
+}
@@ -0,0 +1,96 @@
+package com.jessebrault.gst.parser
+
+import com.jessebrault.gst.ast.AstPrettyPrinterVisitor
+import com.jessebrault.gst.ast.TreeNode
+import com.jessebrault.gst.ast.TreeNodeType
+import com.jessebrault.gst.tokenizer.FsmBasedTokenizer
+import com.jessebrault.gst.tokenizer.TokenType
+import com.jessebrault.gst.tokenizer.TokenizerState
+import org.junit.jupiter.api.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertFalse
+import kotlin.test.assertIs
+import kotlin.test.assertTrue
+
+class FlatAstParserAccumulatorTests {
+
+    private fun parse(input: String, acc: ParserAccumulator, parser: Parser = ExtendedGstParser()) {
+        val tokenizer = FsmBasedTokenizer()
+        tokenizer.start(input, 0, input.length, TokenizerState.TEXT)
+        parser.parse(tokenizer, acc)
+    }
+
+    private fun print(treeNode: TreeNode): String {
+        val printer = AstPrettyPrinterVisitor()
+        printer.visitGString(treeNode)
+        return printer.result
+    }
+
+    private fun assertSameAsTreeNodes(input: String, parser: Parser = ExtendedGstParser()) {
+        val treeAcc = TreeNodeParserAccumulator()
+        this.parse(input, treeAcc, parser)
+        val flatAcc = FlatAstParserAccumulator()
+        this.parse(input, flatAcc, parser)
+        val flatTreeNode = flatAcc.result.toTreeNode()
+        assertIs<TreeNode>(flatTreeNode)
+        assertEquals(this.print(treeAcc.result), this.print(flatTreeNode))
+    }
+
+    @Test
+    fun sameAsTreeNodes() {
+        this.assertSameAsTreeNodes("")
+        this.assertSameAsTreeNodes("Hello, \$name!")
+        this.assertSameAsTreeNodes("<%@ import java.util.List %><% def a = 1 %><%= a %>\${ a + 1 }\$b.c")
+        this.assertSameAsTreeNodes("<%@ %>", StandardGstParser())
+        this.assertSameAsTreeNodes("<% ")
+    }
+
+    @Test
+    fun cursor() {
+        val acc = FlatAstParserAccumulator()
+        this.parse("Hi \$name", acc)
+        val cursor = acc.result.cursor()
+        assertEquals(TreeNodeType.G_STRING, cursor.treeNodeType)
+        assertEquals(0, cursor.start)
+        assertEquals(8, cursor.end)
+        assertFalse(cursor.toParent())
+
+        assertTrue(cursor.toFirstChild())
+        assertTrue(cursor.isLeaf)
+        assertEquals(TokenType.TEXT, cursor.tokenType)
+
+        assertTrue(cursor.toNextSibling())
+        assertEquals(TreeNodeType.DOLLAR_REFERENCE, cursor.treeNodeType)
+        assertEquals(3, cursor.start)
+        assertEquals(8, cursor.end)
+
+        assertTrue(cursor.toFirstChild())
+        assertEquals(TokenType.DOLLAR_REFERENCE_DOLLAR, cursor.tokenType)
+        assertTrue(cursor.toNextSibling())
+        assertEquals(TokenType.DOLLAR_REFERENCE_BODY, cursor.tokenType)
+        assertFalse(cursor.toNextSibling())
+        assertFalse(cursor.toFirstChild())
+
+        assertTrue(cursor.toParent())
+        assertFalse(cursor.toNextSibling())
+        assertTrue(cursor.toParent())
+        assertEquals(0, cursor.node)
+    }
+
+    @Test
+    fun diagnosticsAreSparse() {
+        val acc = FlatAstParserAccumulator()
+        this.parse("a<%@%>b", acc, StandardGstParser())
+        val ast = acc.result
+        assertTrue(ast.hasDiagnostics())
+        var withDiagnostics = 0
+        for (node in 0 until ast.size()) {
+            if (ast.getDiagnostics(node).isNotEmpty()) {
+                withDiagnostics++
+                assertEquals(TreeNodeType.IMPORT_BLOCK, ast.getTreeNodeType(node))
+            }
+        }
+        assertEquals(1, withDiagnostics)
+    }
+
+}
@@ -0,0 +1,171 @@
+package com.jessebrault.gst.parser
+
+import com.jessebrault.gst.ast.AstNode
+import com.jessebrault.gst.ast.AstPrettyPrinterVisitor
+import com.jessebrault.gst.ast.LeafNode
+import com.jessebrault.gst.ast.TreeNode
+import com.jessebrault.gst.tokenizer.CharScanningTokenizer
+import com.jessebrault.gst.tokenizer.FsmBasedTokenizer
+import com.jessebrault.gst.tokenizer.TokenBuffer
+import com.jessebrault.gst.util.TextEdit
+import org.junit.jupiter.api.Test
+import kotlin.random.Random
+import kotlin.test.assertEquals
+import kotlin.test.assertFalse
+import kotlin.test.assertSame
+import kotlin.test.assertTrue
+
+class IncrementalParserTests {
+
+    private fun print(root: TreeNode): String {
+        val printer = AstPrettyPrinterVisitor()
+        printer.visitGString(root)
+        return printer.result
+    }
+
+    private fun assertSameTokens(expected: TokenBuffer, actual: TokenBuffer) {
+        assertEquals(expected.size(), actual.size())
+        for (i in 0 until expected.size()) {
+            assertEquals(expected.getType(i), actual.getType(i))
+            assertEquals(expected.getStart(i), actual.getStart(i))
+            assertEquals(expected.getEnd(i), actual.getEnd(i))
+            assertEquals(expected.getState(i), actual.getState(i))
+        }
+    }
+
+    private fun assertSameAsFullParse(
+            parser: IncrementalParser,
+            previous: IncrementalParser.Snapshot,
+            edit: TextEdit
+    ): IncrementalParser.Snapshot {
+        val newInput = edit.applyTo(previous.input)
+        val actual = parser.reparse(previous, edit, newInput)
+        val expected = parser.parse(newInput)
+        assertSameTokens(expected.tokens, actual.tokens)
+        assertEquals(expected.hasDiagnostics(), actual.hasDiagnostics())
+        assertEquals(this.print(expected.root), this.print(actual.root))
+        if (!expected.hasDiagnostics()) {
+            assertEquals(expected.root, actual.root)
+        }
+        return actual
+    }
+
+    @Test
+    fun smallEditInLargeTemplate() {
+        val parser = IncrementalParser(ExtendedGstParser(), ::FsmBasedTokenizer)
+        val input = "<p>Hello, \$name!</p>\n<% def a = 1 %><%= a %>\${ a + 1 }\n".repeat(1_000)
+        val previous = parser.parse(input)
+        val offset = input.length / 2 + 3
+        val actual = this.assertSameAsFullParse(parser, previous, TextEdit.insert(offset, "x"))
+        assertTrue(actual.parsedTokenCount < 10, "parsedTokenCount: ${ actual.parsedTokenCount }")
+        assertTrue(actual.tokens.reusedPrefixSize + actual.tokens.reusedSuffixSize > previous.tokens.size() - 10)
+    }
+
+    private fun getStart(node: AstNode): Int = when (node) {
+        is LeafNode -> node.tokenStart
+        is TreeNode -> this.getStart(node.children.first())
+    }
+
+    @Test
+    fun suffixSubtreesAreShared() {
+        val parser = IncrementalParser(ExtendedGstParser(), ::FsmBasedTokenizer)
+        val input = "<p>Hello, \$name!</p>\n<% def a = 1 %><%= a %>\${ a + 1 }\n".repeat(1_000)
+        val previous = parser.parse(input)
+        val offset = input.length / 2 + 3
+        val actual = this.assertSameAsFullParse(parser, previous, TextEdit.insert(offset, "xyz"))
+        assertEquals(previous.childCount, actual.childCount)
+        val suffix = (0 until previous.childCount).filter { this.getStart(previous.getChild(it)) > offset }
+        assertTrue(suffix.size > previous.childCount / 2 - 10)
+        for (i in suffix) {
+            assertSame(previous.getChild(i), actual.getChild(i))
+            assertEquals(3, actual.getChildOffset(i))
+        }
+    }
+
+    @Test
+    fun editOpensScriptlet() {
+        val parser = IncrementalParser(ExtendedGstParser(), ::FsmBasedTokenizer)
+        val previous = parser.parse("a b %> c \$d")
+        this.assertSameAsFullParse(parser, previous, TextEdit.insert(1, "<%"))
+    }
+
+    @Test
+    fun editAtEnds() {
+        val parser = IncrementalParser(ExtendedGstParser(), ::FsmBasedTokenizer)
+        val previous = parser.parse("Hello, \$name")
+        this.assertSameAsFullParse(parser, previous, TextEdit.insert(0, "\$"))
+        this.assertSameAsFullParse(parser, previous, TextEdit.insert(12, ".first"))
+        this.assertSameAsFullParse(parser, previous, TextEdit.remove(0, 12))
+        this.assertSameAsFullParse(parser, parser.parse(""), TextEdit.insert(0, "<%= 1 %>"))
+    }
+
+    @Test
+    fun randomEdits() {
+        val random = Random(42)
+        val alphabet = "ab \n\$<%=@>{}\"'.\\"
+        for (parser in listOf(
+                IncrementalParser(ExtendedGstParser(), ::FsmBasedTokenizer),
+                IncrementalParser(StandardGstParser(), ::CharScanningTokenizer)
+        )) {
+            var snapshot = parser.parse("<p>\$a.b</p><% x %><%= y %>\${ \"\${z}\" }<%@ import java.util.List %>")
+            repeat(1_000) {
+                val length = snapshot.input.length
+                val offset = random.nextInt(length + 1)
+                val removed = random.nextInt(minOf(3, length - offset) + 1)
+                val inserted = (0 until random.nextInt(4)).map { alphabet[random.nextInt(alphabet.length)] }
+                        .joinToString("")
+                snapshot = this.assertSameAsFullParse(parser, snapshot, TextEdit(offset, removed, inserted))
+            }
+        }
+    }
+
+    @Test
+    fun randomEditsInLargeTemplate() {
+        val random = Random(7)
+        val alphabet = "ab \n\$<%=>{}\""
+        val parser = IncrementalParser(ExtendedGstParser(), ::FsmBasedTokenizer)
+        var snapshot = parser.parse("<p>\$a.b</p><% x %><%= y %>\${ \"\${z}\" }\n".repeat(300))
+        repeat(300) {
+            val length = snapshot.input.length
+            val offset = random.nextInt(length + 1)
+            val removed = random.nextInt(minOf(3, length - offset) + 1)
+            val inserted = (0 until random.nextInt(4)).map { alphabet[random.nextInt(alphabet.length)] }
+                    .joinToString("")
+            snapshot = this.assertSameAsFullParse(parser, snapshot, TextEdit(offset, removed, inserted))
+        }
+    }
+
+    @Test
+    fun editIntroducingDiagnostic() {
+        // the StandardGstParser does not permit import blocks
+        val parser = IncrementalParser(StandardGstParser(), ::FsmBasedTokenizer)
+        val input = "<p>Hello, \$name!</p>\n<% def a = 1 %><%= a %>\${ a + 1 }\n".repeat(1_000)
+        // so that the import block is the last child parsed again
+        val offset = input.indexOf("<% def", input.length / 2)
+        val importBlock = "<%@ import java.util.List %>"
+        val clean = parser.parse(input)
+
+        val withDiagnostic = this.assertSameAsFullParse(parser, clean, TextEdit.insert(offset, importBlock))
+        assertTrue(withDiagnostic.hasDiagnostics())
+        assertTrue(withDiagnostic.parsedTokenCount < 20, "parsedTokenCount: ${ withDiagnostic.parsedTokenCount }")
+
+        val elsewhere = this.assertSameAsFullParse(parser, withDiagnostic, TextEdit.insert(offset / 2, "x"))
+        assertTrue(elsewhere.hasDiagnostics())
+        assertTrue(elsewhere.parsedTokenCount < 10, "parsedTokenCount: ${ elsewhere.parsedTokenCount }")
+
+        val removed = this.assertSameAsFullParse(parser, elsewhere, TextEdit.remove(offset + 1, importBlock.length))
+        assertFalse(removed.hasDiagnostics())
+        assertTrue(removed.parsedTokenCount < 10, "parsedTokenCount: ${ removed.parsedTokenCount }")
+    }
+
+    @Test
+    fun editClosingScriptletWithDiagnostic() {
+        val parser = IncrementalParser(ExtendedGstParser(), ::FsmBasedTokenizer)
+        val previous = parser.parse("<p>\$a</p>\n".repeat(100) + "<% def b = 1")
+        assertTrue(previous.hasDiagnostics())
+        val actual = this.assertSameAsFullParse(parser, previous, TextEdit.insert(previous.input.length, " %>"))
+        assertFalse(actual.hasDiagnostics())
+        assertTrue(actual.parsedTokenCount < 10, "parsedTokenCount: ${ actual.parsedTokenCount }")
+    }
+
+}
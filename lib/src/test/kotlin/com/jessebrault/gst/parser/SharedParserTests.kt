@@ -0,0 +1,45 @@
+package com.jessebrault.gst.parser
+
+import com.jessebrault.gst.ast.AstPrettyPrinterVisitor
+import com.jessebrault.gst.tokenizer.FsmBasedTokenizer
+import com.jessebrault.gst.tokenizer.TokenizerState
+import org.junit.jupiter.api.Test
+import java.util.concurrent.Callable
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import kotlin.test.assertEquals
+
+class SharedParserTests {
+
+    private fun parse(parser: Parser, input: String): String {
+        val tokenizer = FsmBasedTokenizer()
+        tokenizer.start(input, 0, input.length, TokenizerState.TEXT)
+        val acc = TreeNodeParserAccumulator()
+        parser.parse(tokenizer, acc)
+        val printer = AstPrettyPrinterVisitor()
+        printer.visitGString(acc.result)
+        return printer.result
+    }
+
+    @Test
+    fun oneParserManyThreads() {
+        val inputs = (0 until 64).map {
+            "a$it<%@ import java.util.List %>\$b.c <% def d = $it %><%= d %>\${ d + $it }<% ".repeat(it % 8 + 1)
+        }
+        val expected = inputs.map { this.parse(ExtendedGstParser(), it) }
+        val shared = ExtendedGstParser()
+        val executor = Executors.newFixedThreadPool(8)
+        try {
+            val futures = (0 until 1_000).map { i ->
+                executor.submit(Callable { i % inputs.size to this.parse(shared, inputs[i % inputs.size]) })
+            }
+            futures.forEach {
+                val (index, actual) = it.get(30, TimeUnit.SECONDS)
+                assertEquals(expected[index], actual)
+            }
+        } finally {
+            executor.shutdownNow()
+        }
+    }
+
+}
@@ -0,0 +1,55 @@
+package com.jessebrault.gst.parser
+
+import com.jessebrault.gst.ast.TreeNodeType
+import com.jessebrault.gst.tokenizer.FsmBasedTokenizer
+import com.jessebrault.gst.tokenizer.TokenBuffer
+import com.jessebrault.gst.tokenizer.TokenType
+import com.jessebrault.gst.tokenizer.TokenizerState
+import com.jessebrault.gst.util.Diagnostic
+import org.junit.jupiter.api.Test
+import java.lang.management.ManagementFactory
+import kotlin.test.assertTrue
+
+class StandardGstParserAllocationTests {
+
+    private object NoOpParserAccumulator : ParserAccumulator {
+        override fun start(type: TreeNodeType) {}
+        override fun leaf(type: TokenType, start: Int, end: Int, diagnostics: Collection<Diagnostic>) {}
+        override fun done(diagnostics: Collection<Diagnostic>) {}
+    }
+
+    private val threadMXBean = ManagementFactory.getThreadMXBean() as com.sun.management.ThreadMXBean
+
+    private fun buffer(repeat: Int): TokenBuffer {
+        val input = "Hello, \$name! <% def a = 1 %><%= a %>\${ a + 1 }<%@ import java.util.List %>".repeat(repeat)
+        return TokenBuffer.of(FsmBasedTokenizer(), input, 0, input.length, TokenizerState.TEXT)
+    }
+
+    private fun measure(parser: Parser, buffer: TokenBuffer): Long {
+        val before = this.threadMXBean.currentThreadAllocatedBytes
+        parser.parse(buffer.provider(), NoOpParserAccumulator)
+        return this.threadMXBean.currentThreadAllocatedBytes - before
+    }
+
+    /**
+     * Parsing allocates a constant amount per call, so a template with many thousands of tokens
+     * must allocate about as much as one with a dozen.
+     */
+    @Test
+    fun noPerTokenAllocation() {
+        val small = this.buffer(1)
+        val large = this.buffer(5_000)
+        val parser = ExtendedGstParser()
+        repeat(20) {
+            this.measure(parser, small)
+            this.measure(parser, large)
+        }
+        val smallBytes = this.measure(parser, small)
+        val largeBytes = this.measure(parser, large)
+        assertTrue(
+                largeBytes - smallBytes < 1024,
+                "small: $smallBytes bytes, large (${ large.size() } tokens): $largeBytes bytes"
+        )
+    }
+
+}
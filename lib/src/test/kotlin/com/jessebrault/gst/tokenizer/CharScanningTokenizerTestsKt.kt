@@ -0,0 +1,3 @@
+package com.jessebrault.gst.tokenizer
+
+class CharScanningTokenizerTestsKt : AbstractTokenizerTestsKt(CharScanningTokenizer())
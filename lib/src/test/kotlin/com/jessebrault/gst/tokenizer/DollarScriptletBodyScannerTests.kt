@@ -0,0 +1,63 @@
+package com.jessebrault.gst.tokenizer
+
+import org.junit.jupiter.api.Test
+import kotlin.test.assertEquals
+
+class DollarScriptletBodyScannerTests {
+
+    private fun findClose(body: String): Int = DollarScriptletBodyScanner.findClose(body, 0, body.length)
+
+    @Test
+    fun closingBrace() {
+        assertEquals(2, this.findClose("a }"))
+        assertEquals(6, this.findClose("{ a } }"))
+    }
+
+    @Test
+    fun bracesInStrings() {
+        assertEquals(4, this.findClose("\"}\" }"))
+        assertEquals(4, this.findClose("'}' }"))
+        assertEquals(4, this.findClose("\"{\" }"))
+    }
+
+    @Test
+    fun escapedQuotes() {
+        assertEquals(6, this.findClose("\"\\\"}\" }"))
+        assertEquals(6, this.findClose("'\\'}' }"))
+    }
+
+    @Test
+    fun gStringClosures() {
+        assertEquals(11, this.findClose("\"\${ \"}\" }\" }"))
+        assertEquals(10, this.findClose("\"\${ a }}\" }"))
+        assertEquals(13, this.findClose("\"\${ { b } }\" }"))
+    }
+
+    @Test
+    fun unclosed() {
+        assertEquals(5, this.findClose("a { b"))
+        assertEquals(5, this.findClose("\"\${ a"))
+        assertEquals(3, this.findClose("'a}"))
+    }
+
+    @Test
+    fun deepNesting() {
+        val depth = 20000
+        val body = "\"\${ ".repeat(depth) + "a" + " }\"".repeat(depth) + " }"
+        assertEquals(body.length - 1, this.findClose(body))
+        val input = "\${$body"
+        for (tokenizer in listOf(FsmBasedTokenizer(), CharScanningTokenizer())) {
+            tokenizer.start(input, 0, input.length, TokenizerState.TEXT)
+            val types = mutableListOf<TokenType>()
+            while (tokenizer.currentType != null) {
+                types.add(tokenizer.currentType!!)
+                tokenizer.advance()
+            }
+            assertEquals(
+                    listOf(TokenType.DOLLAR_SCRIPTLET_OPEN, TokenType.DOLLAR_SCRIPTLET_BODY, TokenType.DOLLAR_SCRIPTLET_CLOSE),
+                    types
+            )
+        }
+    }
+
+}
@@ -0,0 +1,94 @@
+package com.jessebrault.gst.tokenizer
+
+import com.jessebrault.gst.ast.AstPrettyPrinterVisitor
+import com.jessebrault.gst.parser.ExtendedGstParser
+import com.jessebrault.gst.parser.Parser
+import com.jessebrault.gst.parser.StandardGstParser
+import com.jessebrault.gst.parser.TreeNodeParserAccumulator
+import com.jessebrault.gst.util.TextEdit
+import org.junit.jupiter.api.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertNull
+
+class TokenBufferTests {
+
+    companion object {
+        private const val input = "<%@ import java.util.List %>Hello, \$name! \${ 1 + 1 } <% def a = 1 %><%= a %>"
+    }
+
+    private fun buffer(): TokenBuffer = TokenBuffer.of(FsmBasedTokenizer(), input, 0, input.length, TokenizerState.TEXT)
+
+    @Test
+    fun sameTokensAsTokenizer() {
+        val buffer = this.buffer()
+        val tokenizer = FsmBasedTokenizer()
+        tokenizer.start(input, 0, input.length, TokenizerState.TEXT)
+        for (i in 0 until buffer.size()) {
+            assertEquals(tokenizer.currentType, buffer.getType(i))
+            assertEquals(tokenizer.currentStart, buffer.getStart(i))
+            assertEquals(tokenizer.currentEnd, buffer.getEnd(i))
+            tokenizer.advance()
+        }
+        assertNull(tokenizer.currentType)
+    }
+
+    @Test
+    fun providerIsReplayable() {
+        val buffer = this.buffer()
+        repeat(2) {
+            val provider = buffer.provider()
+            for (i in 0 until buffer.size()) {
+                assertEquals(buffer.getType(i), provider.currentType)
+                assertEquals(buffer.getStart(i), provider.currentStart)
+                assertEquals(buffer.getEnd(i), provider.currentEnd)
+                provider.advance()
+            }
+            assertNull(provider.currentType)
+        }
+    }
+
+    // Diagnostics have no equals(), so compare the printed trees instead.
+    private fun parse(parser: Parser, tokenProvider: TokenProvider): String {
+        val acc = TreeNodeParserAccumulator()
+        parser.parse(tokenProvider, acc)
+        val printer = AstPrettyPrinterVisitor()
+        printer.visitGString(acc.result)
+        return printer.result
+    }
+
+    @Test
+    fun parsersShareOneBuffer() {
+        val buffer = this.buffer()
+        for (parser in listOf(StandardGstParser(), ExtendedGstParser())) {
+            val expected = this.parse(parser, FsmBasedTokenizer().apply {
+                start(input, 0, input.length, TokenizerState.TEXT)
+            })
+            assertEquals(expected, this.parse(parser, buffer.provider()))
+        }
+    }
+
+    @Test
+    fun empty() {
+        val buffer = TokenBuffer.of(FsmBasedTokenizer(), "", 0, 0, TokenizerState.TEXT)
+        assertEquals(0, buffer.size())
+        assertNull(buffer.provider().currentType)
+    }
+
+    @Test
+    fun relexReusesTokensAroundEdit() {
+        val buffer = this.buffer()
+        val edit = TextEdit.insert(input.indexOf("name") + 2, "xx")
+        val newInput = edit.applyTo(input)
+        val relexed = buffer.relex(edit, newInput, FsmBasedTokenizer())
+        val expected = TokenBuffer.of(FsmBasedTokenizer(), newInput, 0, newInput.length, TokenizerState.TEXT)
+        assertEquals(expected.size(), relexed.size())
+        for (i in 0 until expected.size()) {
+            assertEquals(expected.getType(i), relexed.getType(i))
+            assertEquals(expected.getStart(i), relexed.getStart(i))
+            assertEquals(expected.getEnd(i), relexed.getEnd(i))
+        }
+        // only the dollar reference body is tokenized again
+        assertEquals(expected.size() - 1, relexed.reusedPrefixSize + relexed.reusedSuffixSize)
+    }
+
+}
@@ -7,8 +7,13 @@ import kotlin.test.assertTrue
 abstract class AbstractTokenizerTestsKt(private val tokenizer: Tokenizer) {
 
     @Suppress("MemberVisibilityCanBePrivate")
-    protected fun assertTokens(input: CharSequence, tests: TokenizerTester.() -> Unit) {
-        val tester = TokenizerTester(this.tokenizer, input)
+    protected fun assertTokens(
+            input: CharSequence,
+            start: Int = 0,
+            end: Int = input.length,
+            tests: TokenizerTester.() -> Unit
+    ) {
+        val tester = TokenizerTester(this.tokenizer, input, start, end)
         tests(tester)
         assertTrue(tester.isDone())
     }
@@ -177,4 +182,39 @@ abstract class AbstractTokenizerTestsKt(private val tokenizer: Tokenizer) {
         token(DOLLAR_SCRIPTLET_BODY, 2, 3)
     }
 
-}
\ No newline at end of file
+    @Test
+    fun startIndexIsRespected() = assertTokens("Hello, \$name!", 7) {
+        token(DOLLAR_REFERENCE_DOLLAR, 7, 8)
+        token(DOLLAR_REFERENCE_BODY, 8, 12)
+        token(TEXT, 12, 13)
+    }
+
+    @Test
+    fun endIndexIsRespected() = assertTokens("\$a.b", end = 3) {
+        token(DOLLAR_REFERENCE_DOLLAR, 0, 1)
+        token(DOLLAR_REFERENCE_BODY, 1, 2)
+        token(TEXT, 2, 3)
+    }
+
+    @Test
+    fun longText() {
+        val input = "Hello, World! ".repeat(20_000)
+        assertTokens(input) {
+            token(TEXT, 0, input.length)
+        }
+    }
+
+    @Test
+    fun reusableAfterReset() {
+        assertTokens("<% a") {
+            token(BLOCK_SCRIPTLET_OPEN, 0, 2)
+            token(SCRIPTLET_BODY, 2, 4)
+        }
+        this.tokenizer.reset()
+        assertTokens("\$a") {
+            token(DOLLAR_REFERENCE_DOLLAR, 0, 1)
+            token(DOLLAR_REFERENCE_BODY, 1, 2)
+        }
+    }
+
+}